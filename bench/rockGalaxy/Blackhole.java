@@ -0,0 +1,56 @@
+package rockGalaxy;
+/**
+ * Consumes the results of the measured code, so that the compiler can't
+ * find them unused and remove the code computing them. Like the Blackhole
+ * of JMH, every value is compared with two volatile fields that never hold
+ * the same value: the comparison is never true, but the compiler has to
+ * read the fields and so has to compute the value, without the cost of a
+ * volatile write
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+class Blackhole
+{
+	private volatile long long1 = 1;
+	private volatile long long2 = 2;
+	private volatile double double1 = 1;
+	private volatile double double2 = 2;
+	private volatile Object object1 = new Object();
+	private volatile Object object2 = new Object();
+
+	/**
+	 * Consume an integer result
+	 * @param value the result
+	 */
+	public void consume(long value)
+	{
+		if (value == long1 & value == long2)
+		{
+			long1 = value + 1;
+		}
+	}
+
+	/**
+	 * Consume a decimal result
+	 * @param value the result
+	 */
+	public void consume(double value)
+	{
+		if (value == double1 & value == double2)
+		{
+			double1 = value + 1;
+		}
+	}
+
+	/**
+	 * Consume an object result
+	 * @param value the result
+	 */
+	public void consume(Object value)
+	{
+		if (value == object1 & value == object2)
+		{
+			object1 = new Object();
+		}
+	}
+}
@@ -0,0 +1,685 @@
+package rockGalaxy;
+/**
+ * Benchmarks of the sprite update, the collision test, the animation frames
+ * and the sprite drawing, run without a display on offscreen images.
+ * Every benchmark is run for each sprite count and each mix of sprites,
+ * the worlds are generated from a fixed seed so that runs are comparable.
+ * The game is built with javac alone, so the benchmark doesn't depend on
+ * JMH; it does what matters of it here: warmup iterations are run and
+ * thrown away before the measured ones, and the results of the measured
+ * code are consumed by a Blackhole. Moves, updates and draws leave their
+ * results in the world and in the target image, which are kept
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class SpriteBenchmark
+{
+	/* Mixes of sprites */
+	static final String ASTEROIDS = "asteroids";
+	static final String BULLETS = "bullets";
+	static final String EXPLOSIONS = "explosions";
+
+	/* Area of the screen, a world of SCREEN_SPRITES sprites fills it */
+	static final int SCREENWIDTH = 800;
+	static final int SCREENHEIGHT = 600;
+	static final int SCREEN_SPRITES = 1000;
+
+	private int[] counts = { 100, 1000, 10000, 50000 };
+	private String[] mixes = { ASTEROIDS, BULLETS, EXPLOSIONS };
+	private String[] benchmarks = { "move", "update", "collisions", "filtered", "bruteforce", "frames", "capture", "draw", "drawrotate", "drawatlas", "blit", "blitcompatible" };
+	private int warmupIterations = 5;
+	private int iterations = 10;
+	private long iterationTime = 200;
+	private int bruteForceLimit = 5000;
+	private long seed = 42;
+	private String kernel = System.getProperty(SpriteKernel.PROPERTY, "auto");
+	private int parallelThreshold = 0;
+	private int verifyRounds = 0;
+
+	private BufferedImage[] asteroidImages = new BufferedImage[4];
+	private BufferedImage bulletImage;
+	private BufferedImage bigExplosion;
+	private BufferedImage smallExplosion;
+
+	/* Consumes the results, so the measured code can't be optimized away */
+	private Blackhole blackhole = new Blackhole();
+
+	/**
+	 * Run the benchmarks. Options:
+	 * -counts 100,1000 -mixes asteroids,bullets,explosions
+	 * -benchmarks move,update,collisions,filtered,bruteforce,frames,capture,draw,drawrotate,drawatlas,
+	 * blit,blitcompatible
+	 * -warmup 5 -iterations 10 -time 200 (milliseconds per iteration)
+	 * -bruteforce 5000 (largest count tested by brute force) -seed 42
+	 * -kernel scalar,vector (kernels moving the sprites, default the one
+	 * chosen at startup, see SpriteKernel)
+	 * -parallel 8192 (smallest count updated in parallel, 0 to never update in parallel)
+	 * -verify 1000 (instead of the benchmarks, check that the vector kernel
+	 * moves that many random sets of sprites exactly like the scalar one)
+	 * @param args the options
+	 */
+	public static void main(String[] args)
+	{
+		System.setProperty("java.awt.headless", "true");
+		SpriteBenchmark benchmark = new SpriteBenchmark();
+		benchmark.parse(args);
+		if (benchmark.verifyRounds > 0)
+		{
+			if (!benchmark.verify())
+			{
+				System.exit(1);
+			}
+			return;
+		}
+		benchmark.run();
+	}
+
+	private void parse(String[] args)
+	{
+		for (int i = 0; i + 1 < args.length; i += 2)
+		{
+			String value = args[i + 1];
+			if (args[i].equals("-counts"))
+			{
+				String[] values = value.split(",");
+				counts = new int[values.length];
+				for (int n = 0; n < values.length; n++)
+				{
+					counts[n] = Integer.parseInt(values[n].trim());
+				}
+			}
+			else if (args[i].equals("-mixes"))
+			{
+				mixes = value.split(",");
+			}
+			else if (args[i].equals("-benchmarks"))
+			{
+				benchmarks = value.split(",");
+			}
+			else if (args[i].equals("-warmup"))
+			{
+				warmupIterations = Integer.parseInt(value);
+			}
+			else if (args[i].equals("-iterations"))
+			{
+				iterations = Integer.parseInt(value);
+			}
+			else if (args[i].equals("-time"))
+			{
+				iterationTime = Long.parseLong(value);
+			}
+			else if (args[i].equals("-bruteforce"))
+			{
+				bruteForceLimit = Integer.parseInt(value);
+			}
+			else if (args[i].equals("-seed"))
+			{
+				seed = Long.parseLong(value);
+			}
+			else if (args[i].equals("-kernel"))
+			{
+				kernel = value;
+			}
+			else if (args[i].equals("-parallel"))
+			{
+				parallelThreshold = Integer.parseInt(value);
+			}
+			else if (args[i].equals("-verify"))
+			{
+				verifyRounds = Integer.parseInt(value);
+			}
+			else
+			{
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+	}
+
+	private void run()
+	{
+		createImages();
+		System.out.println("java " + System.getProperty("java.version") + ", " + System.getProperty("java.vm.name")
+				+ ", " + Runtime.getRuntime().availableProcessors() + " cpus, seed " + seed);
+		System.out.println(String.format(Locale.ROOT, "%-14s %-11s %-16s %7s %16s %12s %10s",
+				"benchmark", "mix", "kernel", "sprites", "ns/op", "error", "ns/sprite"));
+
+		for (String mix : mixes)
+		{
+			for (int count : counts)
+			{
+				for (String name : benchmarks)
+				{
+					if (name.equals("bruteforce") && count > bruteForceLimit)
+					{
+						continue;
+					}
+					for (String kernelName : kernel.split(","))
+					{
+						measure(name, mix, count, SpriteKernel.create(kernelName.trim()));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Measure a benchmark on a new world
+	 * @param name the name of the benchmark
+	 * @param mix the mix of sprites of the world
+	 * @param count the number of sprites of the world
+	 * @param spriteKernel the kernel moving the sprites
+	 */
+	private void measure(String name, String mix, int count, SpriteKernel spriteKernel)
+	{
+		final BenchmarkWorld world = createWorld(mix, count);
+		world.setKernel(spriteKernel);
+		if (parallelThreshold > 0)
+		{
+			world.setParallelUpdate(ForkJoinPool.commonPool(), parallelThreshold);
+		}
+		final WorldSnapshot snapshot = new WorldSnapshot();
+		/* The target image is as large as the world, only created to draw on it */
+		final Graphics2D g2d = name.startsWith("draw") || name.startsWith("blit") ? world.getTarget().createGraphics() : null;
+		final RotationCache cache = new RotationCache(64, 64L * 1024 * 1024);
+		snapshot.capture(world.getSprites(), 0, 0, 0, false);
+
+		Runnable operation;
+		if (name.equals("move"))
+		{
+			operation = new Runnable()
+			{
+				public void run()
+				{
+					world.moveSprites();
+				}
+			};
+		}
+		else if (name.equals("update"))
+		{
+			operation = new Runnable()
+			{
+				public void run()
+				{
+					world.updateSprites();
+				}
+			};
+		}
+		else if (name.equals("collisions") || name.equals("filtered") || name.equals("bruteforce"))
+		{
+			world.setBruteForceCollisions(name.equals("bruteforce"));
+			if (name.equals("filtered"))
+			{
+				world.filterCollisions();
+			}
+			operation = new Runnable()
+			{
+				public void run()
+				{
+					world.testCollisions();
+					blackhole.consume(world.getCollisions());
+				}
+			};
+		}
+		else if (name.equals("frames"))
+		{
+			operation = new Runnable()
+			{
+				public void run()
+				{
+					EntityStore<AnimatedSprite> sprites = world.getSprites();
+					for (int i = 0; i < sprites.size(); i++)
+					{
+						AnimatedSprite spr = sprites.get(i);
+						spr.updateAnimation();
+						spr.updateFrame();
+					}
+				}
+			};
+		}
+		else if (name.equals("capture"))
+		{
+			operation = new Runnable()
+			{
+				public void run()
+				{
+					snapshot.capture(world.getSprites(), 0, 0, 0, false);
+					blackhole.consume(snapshot.getCount());
+				}
+			};
+		}
+		else if (name.equals("draw") || name.equals("drawrotate"))
+		{
+			final RotationCache rotations = name.equals("draw") ? cache : null;
+			operation = new Runnable()
+			{
+				public void run()
+				{
+					snapshot.beginDraw(g2d, rotations);
+					for (int i = 0; i < snapshot.getCount(); i++)
+					{
+						snapshot.draw(i, g2d, 0.5);
+					}
+				}
+			};
+		}
+		else if (name.equals("blit") || name.equals("blitcompatible"))
+		{
+			/* The sprite images copied to ARGB pixels, the format of the frames before
+			 * CompatibleImages, or to the format of the screen */
+			final boolean compatible = name.equals("blitcompatible");
+			final EntityStore<AnimatedSprite> sprites = world.getSprites();
+			final Image[] images = new Image[sprites.size()];
+			IdentityHashMap<Image, Image> copies = new IdentityHashMap<Image, Image>();
+			for (int i = 0; i < sprites.size(); i++)
+			{
+				Image image = sprites.get(i).getImage();
+				Image copy = copies.get(image);
+				if (copy == null)
+				{
+					int w = image.getWidth(null);
+					int h = image.getHeight(null);
+					if (compatible)
+					{
+						copy = CompatibleImages.copy(image, w, h, Transparency.TRANSLUCENT);
+					}
+					else
+					{
+						BufferedImage argb = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+						Graphics2D g = argb.createGraphics();
+						g.drawImage(image, 0, 0, null);
+						g.dispose();
+						copy = argb;
+					}
+					copies.put(image, copy);
+				}
+				images[i] = copy;
+			}
+			operation = new Runnable()
+			{
+				public void run()
+				{
+					for (int i = 0; i < images.length; i++)
+					{
+						AnimatedSprite spr = sprites.get(i);
+						g2d.drawImage(images[i], spr.getBoundsX(), spr.getBoundsY(), null);
+					}
+				}
+			};
+		}
+		else if (name.equals("drawatlas"))
+		{
+			final TextureAtlas atlas = new TextureAtlas(1024, 8);
+			operation = new Runnable()
+			{
+				public void run()
+				{
+					snapshot.beginDraw(g2d, cache);
+					snapshot.drawBatched(g2d, 0.5, atlas);
+				}
+			};
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown benchmark " + name);
+		}
+
+		for (int i = 0; i < warmupIterations; i++)
+		{
+			iterate(operation);
+		}
+		double[] results = new double[iterations];
+		double mean = 0;
+		for (int i = 0; i < iterations; i++)
+		{
+			results[i] = iterate(operation);
+			mean += results[i];
+		}
+		mean /= iterations;
+		double variance = 0;
+		for (int i = 0; i < iterations; i++)
+		{
+			variance += (results[i] - mean) * (results[i] - mean);
+		}
+		double error = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+		if (g2d != null)
+		{
+			g2d.dispose();
+		}
+
+		System.out.println(String.format(Locale.ROOT, "%-14s %-11s %-16s %7d %16.1f %12.1f %10.2f",
+				name, mix, spriteKernel.getName(), count, mean, error, mean / count));
+	}
+
+	/**
+	 * Run an operation for an iteration
+	 * @param operation the operation to run
+	 * @return the average time of the operation, in nanoseconds
+	 */
+	private double iterate(Runnable operation)
+	{
+		long length = iterationTime * 1000000L;
+		long operations = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do
+		{
+			operation.run();
+			operations++;
+			elapsed = System.nanoTime() - start;
+		}
+		while (elapsed < length);
+		return (double) elapsed / operations;
+	}
+
+	/**
+	 * Move random sprites with the scalar and the vector kernel and compare
+	 * the positions and the angles bit by bit. The sprites are placed on
+	 * the edges of the warp area and rotated past 0 and 360 degrees, their
+	 * number isn't a multiple of the vector lanes, and some rows are dead
+	 * @return true if the kernels gave the same results
+	 * @throws IllegalArgumentException if the vector kernel isn't available
+	 */
+	private boolean verify()
+	{
+		SpriteKernel scalar = SpriteKernel.create("scalar");
+		SpriteKernel vector = SpriteKernel.create("vector");
+		Random random = new Random(seed);
+		int ticks = 20;
+		long sprites = 0;
+		long differences = 0;
+		for (int round = 0; round < verifyRounds; round++)
+		{
+			int count = 1 + random.nextInt(100);
+			int areaWidth = 1 + random.nextInt(1000);
+			int areaHeight = 1 + random.nextInt(1000);
+			boolean[] types = new boolean[16];
+			for (int t = 0; t < types.length; t++)
+			{
+				types[t] = random.nextBoolean();
+			}
+
+			SpriteData expected = new SpriteData(count);
+			SpriteData actual = new SpriteData(count);
+			for (int i = 0; i < count; i++)
+			{
+				randomSprite(expected, i, random, areaWidth, areaHeight);
+				expected.copy(i, actual, i);
+			}
+			sprites += count;
+
+			for (int tick = 0; tick < ticks; tick++)
+			{
+				scalar.move(expected, count, areaWidth, areaHeight, types);
+				vector.move(actual, count, areaWidth, areaHeight, types);
+				for (int i = 0; i < count; i++)
+				{
+					if (!same(expected.x[i], actual.x[i]) || !same(expected.y[i], actual.y[i])
+							|| !same(expected.prevX[i], actual.prevX[i]) || !same(expected.prevY[i], actual.prevY[i])
+							|| !same(expected.faceAngle[i], actual.faceAngle[i]))
+					{
+						if (differences < 10)
+						{
+							System.out.println(String.format(Locale.ROOT,
+									"round %d tick %d row %d: scalar %s,%s %s, vector %s,%s %s", round, tick, i,
+									expected.x[i], expected.y[i], expected.faceAngle[i],
+									actual.x[i], actual.y[i], actual.faceAngle[i]));
+						}
+						differences++;
+						/* Go on from the same state, to find the other differences */
+						expected.copy(i, actual, i);
+					}
+				}
+			}
+		}
+		System.out.println(verifyRounds + " rounds, " + sprites + " sprites moved " + ticks + " ticks by the "
+				+ scalar.getName() + " and the " + vector.getName() + " kernel: "
+				+ (differences == 0 ? "same results" : differences + " DIFFERENT results"));
+		return differences == 0;
+	}
+
+	private static boolean same(double a, double b)
+	{
+		return Double.doubleToRawLongBits(a) == Double.doubleToRawLongBits(b);
+	}
+
+	/**
+	 * Set a row to a random sprite, often on the edges of the warp area
+	 */
+	private static void randomSprite(SpriteData data, int i, Random random, int areaWidth, int areaHeight)
+	{
+		data.alive[i] = random.nextInt(5) > 0;
+		/* Some types are out of the range of the warping types */
+		data.type[i] = random.nextInt(20) - 2;
+		data.width[i] = 1 + random.nextInt(128);
+		data.height[i] = 1 + random.nextInt(128);
+		data.x[i] = randomCoordinate(random, data.width[i], areaWidth);
+		data.y[i] = randomCoordinate(random, data.height[i], areaHeight);
+		data.vx[i] = randomSpeed(random);
+		data.vy[i] = randomSpeed(random);
+		data.prevX[i] = random.nextDouble();
+		data.prevY[i] = random.nextDouble();
+
+		double[] angles = { 0, 360, 0.5, 359.5, -0.0, random.nextDouble() * 360 };
+		data.faceAngle[i] = angles[random.nextInt(angles.length)];
+		double[] rates = { 0, 1, -1, 360, -360, 0.25, -0.25, random.nextDouble() * 40 - 20 };
+		data.rotRate[i] = rates[random.nextInt(rates.length)];
+	}
+
+	private static double randomCoordinate(Random random, int size, int area)
+	{
+		double[] edges = { 0 - (size - 1), area, 0, -0.0, 0 - (size - 1) - 0.5, area + 0.5,
+				random.nextDouble() * (area + 2 * size) - size };
+		return edges[random.nextInt(edges.length)];
+	}
+
+	private static double randomSpeed(Random random)
+	{
+		double[] speeds = { 0, 1, -1, 0.5, -0.5, random.nextDouble() * 20 - 10 };
+		return speeds[random.nextInt(speeds.length)];
+	}
+
+	/**
+	 * Create a world with the given sprites. The world grows with the number
+	 * of sprites, so that the density of sprites doesn't change
+	 * @param mix the mix of sprites
+	 * @param count the number of sprites
+	 * @return the world
+	 */
+	private BenchmarkWorld createWorld(String mix, int count)
+	{
+		double scale = Math.sqrt(Math.max(1.0, (double) count / SCREEN_SPRITES));
+		BenchmarkWorld world = new BenchmarkWorld((int) (SCREENWIDTH * scale), (int) (SCREENHEIGHT * scale));
+		Random rand = new Random(seed);
+		for (int n = 0; n < count; n++)
+		{
+			AnimatedSprite spr;
+			int kind = rand.nextInt(10);
+			if (mix.equals(BULLETS) && kind < 9)
+			{
+				spr = createBullet(rand);
+			}
+			else if (mix.equals(EXPLOSIONS) && kind < 6)
+			{
+				spr = createExplosion(rand, kind < 2);
+			}
+			else if (mix.equals(ASTEROIDS) || mix.equals(BULLETS) || mix.equals(EXPLOSIONS))
+			{
+				spr = createAsteroid(rand);
+			}
+			else
+			{
+				throw new IllegalArgumentException("Unknown mix " + mix);
+			}
+			spr.getPosition().setX(rand.nextInt(world.getWidth()));
+			spr.getPosition().setY(rand.nextInt(world.getHeight()));
+			spr.setAlive(true);
+			spr.updateFrame();
+			spr.transform();
+			world.getSprites().add(spr);
+		}
+		return world;
+	}
+
+	private AnimatedSprite createAsteroid(Random rand)
+	{
+		AnimatedSprite ast = new AnimatedSprite(null, null);
+		int size = rand.nextInt(4);
+		ast.setSpriteType(10 + size);
+		ast.setImage(asteroidImages[size]);
+		ast.setFrameWidth(asteroidImages[size].getWidth());
+		ast.setFrameHeight(asteroidImages[size].getHeight());
+		ast.setFaceAngle(rand.nextInt(360));
+		ast.setMoveAngle(rand.nextInt(360));
+		ast.setRotationRate(rand.nextDouble());
+		double angle = Math.toRadians(ast.getMoveAngle() - 90);
+		ast.getVelocity().setX(Math.cos(angle));
+		ast.getVelocity().setY(Math.sin(angle));
+		return ast;
+	}
+
+	private AnimatedSprite createBullet(Random rand)
+	{
+		AnimatedSprite bul = new AnimatedSprite(null, null);
+		bul.setSpriteType(100);
+		bul.setImage(bulletImage);
+		bul.setFrameWidth(bulletImage.getWidth());
+		bul.setFrameHeight(bulletImage.getHeight());
+		bul.setFaceAngle(rand.nextInt(360));
+		bul.setMoveAngle(bul.getFaceAngle() - 90);
+		double angle = Math.toRadians(bul.getMoveAngle());
+		bul.getVelocity().setX(Math.cos(angle) * 4);
+		bul.getVelocity().setY(Math.sin(angle) * 4);
+		return bul;
+	}
+
+	private AnimatedSprite createExplosion(Random rand, boolean big)
+	{
+		AnimatedSprite expl = new AnimatedSprite(null, null);
+		expl.setSpriteType(200);
+		expl.setAnimImage(big ? bigExplosion : smallExplosion);
+		expl.setTotalFrames(big ? 16 : 8);
+		expl.setNumberOfAnimations(4);
+		expl.setFrameWidth(big ? 96 : 40);
+		expl.setFrameHeight(big ? 96 : 40);
+		expl.setFrameDelay(2);
+		expl.setCurrentFrame(rand.nextInt(expl.totalFrames()));
+		return expl;
+	}
+
+	/**
+	 * Create images with the size of the images of the game
+	 */
+	private void createImages()
+	{
+		int[] sizes = { 128, 48, 32, 20 };
+		for (int n = 0; n < sizes.length; n++)
+		{
+			asteroidImages[n] = createSheet(sizes[n], sizes[n], 1, 1, Color.GRAY);
+		}
+		bulletImage = createSheet(24, 24, 1, 1, Color.CYAN);
+		bigExplosion = createSheet(96, 96, 4, 4, Color.ORANGE);
+		smallExplosion = createSheet(40, 40, 4, 2, Color.YELLOW);
+	}
+
+	private BufferedImage createSheet(int width, int height, int columns, int rows, Color color)
+	{
+		BufferedImage image = new BufferedImage(width * columns, height * rows, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(color);
+		for (int n = 0; n < columns * rows; n++)
+		{
+			int inset = n * Math.min(width, height) / (3 * columns * rows);
+			g.fillOval((n % columns) * width + inset, (n / columns) * height + inset,
+					width - 2 * inset, height - 2 * inset);
+		}
+		g.dispose();
+		return image;
+	}
+
+	/**
+	 * A world whose sprites wrap around its borders and never die, so that
+	 * it stays the same while it's measured
+	 */
+	static class BenchmarkWorld extends GameWorld
+	{
+		private int width;
+		private int height;
+		private BufferedImage target;
+		private long collisions = 0;
+
+		BenchmarkWorld(int width, int height)
+		{
+			this.width = width;
+			this.height = height;
+			setWarpArea(width, height);
+			for (int type : new int[] { 10, 11, 12, 13, 100, 200 })
+			{
+				setWarping(type, true);
+			}
+		}
+
+		public int getWidth()
+		{
+			return width;
+		}
+
+		public int getHeight()
+		{
+			return height;
+		}
+
+		/**
+		 * Get an image as large as the world, to draw the sprites on
+		 * @return the image
+		 */
+		public BufferedImage getTarget()
+		{
+			if (target == null)
+			{
+				target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			}
+			return target;
+		}
+
+		public long getCollisions()
+		{
+			return collisions;
+		}
+
+		/**
+		 * Test only the pairs the game is interested in, like its rules do:
+		 * bullets against asteroids, nothing against explosions
+		 */
+		public void filterCollisions()
+		{
+			for (int type : new int[] { 10, 11, 12, 13 })
+			{
+				setCollisionFilter(type, 2, 0);
+			}
+			setCollisionFilter(100, 4, 2);
+		}
+
+		void spriteUpdate(AnimatedSprite spr)
+		{
+		}
+
+		void spriteDying(AnimatedSprite spr)
+		{
+		}
+
+		void spriteCollision(AnimatedSprite spr1, AnimatedSprite spr2)
+		{
+			collisions++;
+		}
+	}
+}
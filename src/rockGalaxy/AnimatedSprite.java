@@ -12,17 +12,14 @@ import java.awt.image.BufferedImage;
 public class AnimatedSprite extends Sprite
 {
     private ImageEntity animationImage;
-    private BufferedImage tempImage;
-    private Graphics2D tempSurface;
+    private BufferedImage[] frames;
     
-    private int currentFrame;
     private int totFrames;
     private int animationDirection;
     private int frameCount;
     private int frameDelay;
-    private int frameWidth;
-    private int frameHeight;
     private int numberOfAnimations;
+    private SpritePool pool;
 
     /**
      * Constructor
@@ -33,14 +30,49 @@ public class AnimatedSprite extends Sprite
     {
         super(applet, g2d);
         animationImage = new ImageEntity(applet);
-        currentFrame = 0;
         totFrames = 0;
         animationDirection = 1;
         frameCount = 0;
         frameDelay = 0;
-        frameWidth = 0;
-        frameHeight = 0;
         numberOfAnimations = 0;
+        pool = null;
+    }
+
+    /**
+     * Bring the sprite and its animation back to the state it has after construction
+     */
+    @Override
+    public void reset()
+    {
+        super.reset();
+        animationImage.setImage(null);
+        frames = null;
+        data.frame[row] = 0;
+        totFrames = 0;
+        animationDirection = 1;
+        frameCount = 0;
+        frameDelay = 0;
+        data.width[row] = 0;
+        data.height[row] = 0;
+        numberOfAnimations = 0;
+    }
+
+    /**
+     * Get the pool the sprite belongs to
+     * @return the pool of the sprite, null if it isn't pooled
+     */
+    public SpritePool getPool()
+    {
+    	return pool;
+    }
+
+    /**
+     * Set the pool the sprite is given back to when removed from the game
+     * @param pool the pool of the sprite
+     */
+    public void setPool(SpritePool pool)
+    {
+    	this.pool = pool;
     }
 
     /**
@@ -49,7 +81,7 @@ public class AnimatedSprite extends Sprite
      */
     public int getCurrentFrame()
     {
-    	return currentFrame;
+    	return data.frame[row];
     }
     
     /**
@@ -58,7 +90,7 @@ public class AnimatedSprite extends Sprite
      */
     public void setCurrentFrame(int frame)
     {
-    	currentFrame = frame;
+    	data.frame[row] = frame;
     }
 
     /**
@@ -67,22 +99,24 @@ public class AnimatedSprite extends Sprite
      */
     public int getFrameWidth()
     {
-    	return frameWidth;
+    	return data.width[row];
     }
     
     public void setFrameWidth(int width)
     {
-    	frameWidth = width;
+    	data.width[row] = width;
+    	frames = null;
     }
 
     public int getFrameHeight()
     {
-    	return frameHeight;
+    	return data.height[row];
     }
     
     public void setFrameHeight(int height)
     {
-    	frameHeight = height;
+    	data.height[row] = height;
+    	frames = null;
     }
 
     public int totalFrames()
@@ -93,6 +127,7 @@ public class AnimatedSprite extends Sprite
     public void setTotalFrames(int total)
     {
     	totFrames = total;
+    	frames = null;
     }
 
     public int animationDirection()
@@ -109,6 +144,24 @@ public class AnimatedSprite extends Sprite
     {
     	return frameDelay;
     }
+
+    /**
+     * Get the number of ticks since the last frame change
+     * @return the ticks of the current frame
+     */
+    public int getFrameCount()
+    {
+    	return frameCount;
+    }
+
+    /**
+     * Set the number of ticks since the last frame change
+     * @param count the ticks of the current frame
+     */
+    public void setFrameCount(int count)
+    {
+    	frameCount = count;
+    }
     
     public void setFrameDelay(int delay)
     {
@@ -132,6 +185,7 @@ public class AnimatedSprite extends Sprite
     public void setNumberOfAnimations(int num)
     {
     	numberOfAnimations = num;
+    	frames = null;
     }
 
     /**
@@ -150,6 +204,7 @@ public class AnimatedSprite extends Sprite
     public void setAnimImage(Image image)
     {
     	animationImage.setImage(image);
+    	frames = null;
     }
 
     /**
@@ -161,39 +216,34 @@ public class AnimatedSprite extends Sprite
         if (frameCount > frameDelay)
         {
             frameCount = 0;
-            currentFrame += animationDirection;
-            if (currentFrame > totFrames - 1) {
-                currentFrame = 0;
+            data.frame[row] += animationDirection;
+            if (data.frame[row] > totFrames - 1) {
+                data.frame[row] = 0;
             }
-            else if (currentFrame < 0) {
-                currentFrame = totFrames - 1;
+            else if (data.frame[row] < 0) {
+                data.frame[row] = totFrames - 1;
             }
         }
     }
 
     /**
-     * Update the animation frame
+     * Update the animation frame. The frames are sliced from the animation
+     * image once and shared with every sprite using the same image
      */
     public void updateFrame()
     {
-        if (totFrames > 0)
+        if (totFrames > 0 && numberOfAnimations > 0 && animationImage.getImage() != null)
         {
-            int frameX = (getCurrentFrame() % getNumberOfAnimations()) * getFrameWidth();
-            int frameY = (getCurrentFrame() / getNumberOfAnimations()) * getFrameHeight();
-
-            if (tempImage == null) {
-                tempImage = new BufferedImage(getFrameWidth(), getFrameHeight(),
-                                              BufferedImage.TYPE_INT_ARGB);
-                tempSurface = tempImage.createGraphics();
+            if (frames == null)
+            {
+                frames = SpriteSheet.getFrames(animationImage.getImage(), data.width[row],
+                		data.height[row], numberOfAnimations, totFrames);
             }
-
-            if (animationImage.getImage() != null) {
-                tempSurface.drawImage(animationImage.getImage(), 0, 0, getFrameWidth() - 1,
-                		getFrameHeight() - 1, frameX, frameY,
-                frameX + getFrameWidth(),
-                frameY + getFrameHeight(), getApplet());
+            int frame = data.frame[row];
+            if (frame >= 0 && frame < totFrames && getImage() != frames[frame])
+            {
+                super.setImage(frames[frame]);
             }
-            super.setImage(tempImage);
         }
     }
 
@@ -0,0 +1,257 @@
+package rockGalaxy;
+/**
+ * A single file holding the assets of the game already decoded, written
+ * by AssetPacker and read through a memory mapped buffer, so that loading
+ * an asset is a copy from the mapped file instead of a decoding.
+ * The file starts with a header: the magic number, the version and the
+ * number of assets, followed by the index, an entry per asset: the name,
+ * the kind, the offset and the length of its data and four parameters.
+ * Images are premultiplied ARGB pixels, one int per pixel, row by row,
+ * and their parameters are the width and the height. Sounds are PCM
+ * samples, and their parameters are the sample rate (as the bits of a
+ * float), the bits per sample, the channels and the encoding flags. Other
+ * files, like MIDI songs, are stored as they are. Everything is little endian
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+class AssetArchive
+{
+	static final int MAGIC = 0x52474141; // "RGAA"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 12;
+	static final int ENTRY_SIZE = 1 + 8 + 4 + 4 * 4;
+
+	/* Kinds of assets */
+	static final int RAW = 0;
+	static final int IMAGE = 1;
+	static final int SOUND = 2;
+
+	/* Encoding flags of the sounds */
+	static final int SIGNED = 1;
+	static final int BIG_ENDIAN = 2;
+
+	/* System property with the path of the archive of the game */
+	static final String PROPERTY = "rockgalaxy.assets";
+	static final String DEFAULT_FILE = "rockgalaxy.rga";
+
+	private MappedByteBuffer buffer;
+	private HashMap<String, Entry> entries = new HashMap<String, Entry>();
+
+	/**
+	 * An asset of the archive
+	 */
+	private static class Entry
+	{
+		int kind;
+		long offset;
+		int length;
+		int[] params = new int[4];
+	}
+
+	/**
+	 * Open the archive of the game, if any: the file named by the system
+	 * property rockgalaxy.assets, or rockgalaxy.rga in the working directory
+	 * @return the archive, null if there is none or it can't be read
+	 */
+	static AssetArchive openDefault()
+	{
+		Path file = Paths.get(System.getProperty(PROPERTY, DEFAULT_FILE));
+		if (!Files.isRegularFile(file))
+		{
+			return null;
+		}
+		try
+		{
+			return new AssetArchive(file);
+		}
+		catch (IOException e)
+		{
+			System.out.println("Can't read the assets of " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Constructor, maps the archive and reads its index
+	 * @param file the archive
+	 * @throws IOException if the file can't be mapped, is larger than 2 GB,
+	 * or isn't an archive of this version
+	 */
+	AssetArchive(Path file) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try
+		{
+			if (channel.size() > Integer.MAX_VALUE)
+			{
+				throw new IOException("Asset archive larger than 2 GB");
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
+		{
+			/* The mapping stays valid once the channel is closed */
+			channel.close();
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		try
+		{
+			readIndex();
+		}
+		catch (BufferUnderflowException e)
+		{
+			/* A truncated index must not stop the game, it falls back to the loose resources */
+			throw new IOException("Truncated asset archive", e);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IOException("Corrupted asset archive", e);
+		}
+	}
+
+	private void readIndex() throws IOException
+	{
+		if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+		{
+			throw new IOException("Not an asset archive");
+		}
+		int version = buffer.getInt();
+		if (version != VERSION)
+		{
+			throw new IOException("Unsupported asset archive version " + version);
+		}
+		int count = buffer.getInt();
+		for (int i = 0; i < count; i++)
+		{
+			byte[] name = new byte[buffer.getShort() & 0xFFFF];
+			buffer.get(name);
+			Entry entry = new Entry();
+			entry.kind = buffer.get();
+			entry.offset = buffer.getLong();
+			entry.length = buffer.getInt();
+			for (int p = 0; p < entry.params.length; p++)
+			{
+				entry.params[p] = buffer.getInt();
+			}
+			if (entry.offset < 0 || entry.length < 0 || entry.offset + entry.length > buffer.capacity())
+			{
+				throw new IOException("Truncated asset archive");
+			}
+			entries.put(new String(name, StandardCharsets.UTF_8), entry);
+		}
+	}
+
+	/**
+	 * Get the number of assets
+	 * @return the number of assets of the archive
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Return true if the archive holds an asset
+	 * @param name the name of the asset, like the name of its resource: /images/space.png
+	 * @return if the asset is in the archive
+	 */
+	public boolean contains(String name)
+	{
+		return entries.containsKey(name);
+	}
+
+	/**
+	 * Read an image, copying its pixels from the mapped file
+	 * @param name the name of the image
+	 * @return the image, with premultiplied ARGB pixels
+	 * @throws IOException if the archive has no such image
+	 */
+	public BufferedImage readImage(String name) throws IOException
+	{
+		Entry entry = entry(name, IMAGE);
+		int width = entry.params[0];
+		int height = entry.params[1];
+		if (width <= 0 || height <= 0 || (long) width * height * 4 != entry.length)
+		{
+			throw new IOException("Corrupted image " + name);
+		}
+		/* Pixels are set through the raster, getting the data buffer would stop Java2D from accelerating the image */
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		int[] pixels = new int[width * height];
+		data(entry).asIntBuffer().get(pixels);
+		image.getRaster().setDataElements(0, 0, width, height, pixels);
+		return image;
+	}
+
+	/**
+	 * Open a sound, copying its samples from the mapped file
+	 * @param name the name of the sound
+	 * @return the stream of the samples
+	 * @throws IOException if the archive has no such sound
+	 */
+	public AudioInputStream readSound(String name) throws IOException
+	{
+		Entry entry = entry(name, SOUND);
+		int flags = entry.params[3];
+		AudioFormat format = new AudioFormat(Float.intBitsToFloat(entry.params[0]), entry.params[1],
+				entry.params[2], (flags & SIGNED) != 0, (flags & BIG_ENDIAN) != 0);
+		byte[] samples = new byte[entry.length];
+		data(entry).get(samples);
+		return new AudioInputStream(new ByteArrayInputStream(samples), format, entry.length / format.getFrameSize());
+	}
+
+	/**
+	 * Open a file stored as it is
+	 * @param name the name of the file
+	 * @return the stream of the bytes of the file
+	 * @throws IOException if the archive has no such file
+	 */
+	public InputStream readRaw(String name) throws IOException
+	{
+		Entry entry = entry(name, RAW);
+		byte[] bytes = new byte[entry.length];
+		data(entry).get(bytes);
+		return new ByteArrayInputStream(bytes);
+	}
+
+	private Entry entry(String name, int kind) throws IOException
+	{
+		Entry entry = entries.get(name);
+		if (entry == null || entry.kind != kind)
+		{
+			throw new IOException("No such asset: " + name);
+		}
+		return entry;
+	}
+
+	/**
+	 * Get the data of an asset as a view of the mapped file; the view is
+	 * private to the caller, so assets can be read by many threads at once
+	 */
+	private ByteBuffer data(Entry entry)
+	{
+		ByteBuffer data = buffer.duplicate();
+		data.position((int) entry.offset);
+		data.limit((int) entry.offset + entry.length);
+		return data.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+}
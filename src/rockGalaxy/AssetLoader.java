@@ -0,0 +1,176 @@
+package rockGalaxy;
+/**
+ * Loads the images and the sounds of the game on a small pool of threads,
+ * so that they are decoded in parallel while the game is already shown.
+ * Images are decoded with ImageIO and converted once to the pixel format
+ * of the screen, see CompatibleImages, so they are never converted again when drawn. Every load
+ * returns a future: the game waits only for the assets it needs now.
+ * Assets found in the archive of the game, see AssetArchive, are copied
+ * from it rather than decoded
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+
+class AssetLoader
+{
+	private ExecutorService pool;
+
+	/* The archive of the game, opened the first time an asset is loaded */
+	private static AssetArchive archive;
+	private static boolean archiveOpened = false;
+
+	/**
+	 * Constructor
+	 * @param threads the number of threads decoding the assets
+	 */
+	AssetLoader(int threads)
+	{
+		pool = Executors.newFixedThreadPool(threads, new ThreadFactory()
+		{
+			public Thread newThread(Runnable task)
+			{
+				Thread thread = new Thread(task, "asset loader");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Get the number of threads worth using to load the assets: they are
+	 * decoded by the CPU, but some time is spent reading the files
+	 * @return the number of threads
+	 */
+	static int defaultThreads()
+	{
+		return Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Get the archive of the game
+	 * @return the archive, null if the game has no archive
+	 */
+	static synchronized AssetArchive getArchive()
+	{
+		if (!archiveOpened)
+		{
+			archive = AssetArchive.openDefault();
+			archiveOpened = true;
+		}
+		return archive;
+	}
+
+	/**
+	 * Start loading an image
+	 * @param name the name of the image, a resource of the game
+	 * @return the image, once decoded and converted
+	 */
+	public Future<BufferedImage> loadImage(final String name)
+	{
+		return pool.submit(new Callable<BufferedImage>()
+		{
+			public BufferedImage call() throws IOException
+			{
+				return readImage(name);
+			}
+		});
+	}
+
+	/**
+	 * Start loading a sound
+	 * @param sound the sound to load
+	 * @param name the name of the sound file, a resource of the game
+	 * @return true once the sound is loaded, false if it can't be
+	 */
+	public Future<Boolean> loadSound(final Sound sound, final String name)
+	{
+		return pool.submit(new Callable<Boolean>()
+		{
+			public Boolean call()
+			{
+				return sound.load(name);
+			}
+		});
+	}
+
+	/**
+	 * Stop the threads once the assets requested so far are loaded
+	 */
+	public void shutdown()
+	{
+		pool.shutdown();
+	}
+
+	/**
+	 * Wait for an asset
+	 * @param asset the asset being loaded
+	 * @return the loaded asset
+	 * @throws IllegalStateException if the asset can't be loaded
+	 */
+	static <T> T get(Future<T> asset)
+	{
+		boolean interrupted = false;
+		try
+		{
+			while (true)
+			{
+				try
+				{
+					return asset.get();
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+			}
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Can't load an asset", e.getCause());
+		}
+		finally
+		{
+			if (interrupted)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Decode an image and convert it to the pixel format of the screen
+	 * @param name the name of the image, a resource of the game
+	 * @return the image
+	 * @throws IOException if the image can't be found or decoded
+	 */
+	static BufferedImage readImage(String name) throws IOException
+	{
+		AssetArchive assets = getArchive();
+		if (assets != null && assets.contains(name))
+		{
+			return CompatibleImages.toCompatible(assets.readImage(name));
+		}
+		URL url = AssetLoader.class.getResource(name);
+		if (url == null)
+		{
+			throw new IOException("Image not found: " + name);
+		}
+		BufferedImage image = ImageIO.read(url);
+		if (image == null)
+		{
+			throw new IOException("Unknown image format: " + name);
+		}
+		return CompatibleImages.toCompatible(image);
+	}
+}
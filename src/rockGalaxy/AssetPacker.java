@@ -0,0 +1,236 @@
+package rockGalaxy;
+/**
+ * Packs the assets of the game into an AssetArchive, decoding them once at
+ * build time: images become premultiplied ARGB pixels, sampled sounds
+ * become 16 bit PCM samples and any other file is copied as it is.
+ * Usage: java -cp out rockGalaxy.AssetPacker resources rockgalaxy.rga
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+public class AssetPacker
+{
+	/* Data of every asset starts at a multiple of this */
+	private static final int ALIGNMENT = 64;
+
+	private ArrayList<String> names = new ArrayList<String>();
+	private ArrayList<Integer> kinds = new ArrayList<Integer>();
+	private ArrayList<int[]> params = new ArrayList<int[]>();
+	private ArrayList<Object> data = new ArrayList<Object>();
+
+	/**
+	 * Add every file of a folder and of its subfolders, named after their
+	 * path from the folder: resources/images/space.png is /images/space.png
+	 * @param root the folder
+	 * @throws IOException if a file can't be read or decoded
+	 */
+	public void addFolder(Path root) throws IOException
+	{
+		addFolder(root, root.toFile());
+	}
+
+	private void addFolder(Path root, File folder) throws IOException
+	{
+		File[] files = folder.listFiles();
+		if (files == null)
+		{
+			throw new IOException("Not a folder: " + folder);
+		}
+		Arrays.sort(files);
+		for (File file : files)
+		{
+			if (file.isDirectory())
+			{
+				addFolder(root, file);
+			}
+			else
+			{
+				String name = "/" + root.relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+				add(name, file.toPath());
+			}
+		}
+	}
+
+	/**
+	 * Add a file, decoding it if it's an image or a sampled sound
+	 * @param name the name of the asset
+	 * @param file the file
+	 * @throws IOException if the file can't be read or decoded
+	 */
+	public void add(String name, Path file) throws IOException
+	{
+		String lower = name.toLowerCase(Locale.ROOT);
+		if (lower.endsWith(".png") || lower.endsWith(".gif") || lower.endsWith(".jpg"))
+		{
+			addImage(name, file);
+		}
+		else if (lower.endsWith(".au") || lower.endsWith(".wav") || lower.endsWith(".aiff"))
+		{
+			addSound(name, file);
+		}
+		else
+		{
+			names.add(name);
+			kinds.add(AssetArchive.RAW);
+			params.add(new int[4]);
+			data.add(Files.readAllBytes(file));
+		}
+	}
+
+	private void addImage(String name, Path file) throws IOException
+	{
+		BufferedImage decoded = ImageIO.read(file.toFile());
+		if (decoded == null)
+		{
+			throw new IOException("Unknown image format: " + file);
+		}
+		BufferedImage image = new BufferedImage(decoded.getWidth(), decoded.getHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D g = image.createGraphics();
+		g.setComposite(AlphaComposite.Src);
+		g.drawImage(decoded, 0, 0, null);
+		g.dispose();
+
+		names.add(name);
+		kinds.add(AssetArchive.IMAGE);
+		params.add(new int[] { image.getWidth(), image.getHeight(), 0, 0 });
+		data.add(((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+	}
+
+	private void addSound(String name, Path file) throws IOException
+	{
+		try
+		{
+			AudioInputStream source = AudioSystem.getAudioInputStream(file.toFile());
+			AudioFormat format = source.getFormat();
+			AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, format.getSampleRate(), 16,
+					format.getChannels(), format.getChannels() * 2, format.getSampleRate(), false);
+			AudioInputStream samples = AudioSystem.getAudioInputStream(pcm, source);
+			byte[] bytes = samples.readAllBytes();
+			samples.close();
+
+			names.add(name);
+			kinds.add(AssetArchive.SOUND);
+			params.add(new int[] { Float.floatToIntBits(pcm.getSampleRate()), pcm.getSampleSizeInBits(),
+					pcm.getChannels(), AssetArchive.SIGNED });
+			data.add(bytes);
+		}
+		catch (UnsupportedAudioFileException e)
+		{
+			throw new IOException("Unknown sound format: " + file, e);
+		}
+	}
+
+	/**
+	 * Write the archive
+	 * @param file the archive to write
+	 * @throws IOException if the file can't be written
+	 */
+	public void write(Path file) throws IOException
+	{
+		long size = AssetArchive.HEADER_SIZE;
+		byte[][] encodedNames = new byte[names.size()][];
+		for (int i = 0; i < names.size(); i++)
+		{
+			encodedNames[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+			size += 2 + encodedNames[i].length + AssetArchive.ENTRY_SIZE;
+		}
+		long[] offsets = new long[names.size()];
+		for (int i = 0; i < names.size(); i++)
+		{
+			size = (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+			offsets[i] = size;
+			size += length(data.get(i));
+		}
+		if (size > Integer.MAX_VALUE)
+		{
+			throw new IOException("Too many assets for an archive");
+		}
+
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try
+		{
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(AssetArchive.MAGIC);
+			buffer.putInt(AssetArchive.VERSION);
+			buffer.putInt(names.size());
+			for (int i = 0; i < names.size(); i++)
+			{
+				buffer.putShort((short) encodedNames[i].length);
+				buffer.put(encodedNames[i]);
+				buffer.put((byte) (int) kinds.get(i));
+				buffer.putLong(offsets[i]);
+				buffer.putInt(length(data.get(i)));
+				for (int p : params.get(i))
+				{
+					buffer.putInt(p);
+				}
+			}
+			for (int i = 0; i < names.size(); i++)
+			{
+				buffer.position((int) offsets[i]);
+				Object bytes = data.get(i);
+				if (bytes instanceof int[])
+				{
+					buffer.asIntBuffer().put((int[]) bytes);
+				}
+				else
+				{
+					buffer.put((byte[]) bytes);
+				}
+			}
+			buffer.force();
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+
+	private static int length(Object bytes)
+	{
+		return bytes instanceof int[] ? ((int[]) bytes).length * 4 : ((byte[]) bytes).length;
+	}
+
+	/**
+	 * Pack a folder of assets. Arguments: the folder (default resources)
+	 * and the archive to write (default rockgalaxy.rga)
+	 * @param args the arguments
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		System.setProperty("java.awt.headless", "true");
+		Path root = Paths.get(args.length > 0 ? args[0] : "resources");
+		Path file = Paths.get(args.length > 1 ? args[1] : AssetArchive.DEFAULT_FILE);
+		long start = System.nanoTime();
+		AssetPacker packer = new AssetPacker();
+		packer.addFolder(root);
+		packer.write(file);
+		System.out.println(packer.names.size() + " assets packed in " + file + ", " + Files.size(file) / 1024
+				+ " KB, " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+}
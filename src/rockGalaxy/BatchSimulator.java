@@ -0,0 +1,235 @@
+package rockGalaxy;
+/**
+ * Many independent headless games in the same JVM, simulated in parallel
+ * on a work stealing pool. Every game has its own sprites and its own
+ * random generator, seeded from the seed of the batch; the images are
+ * loaded once and shared
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class BatchSimulator
+{
+	/* Games simulated by a task without splitting it further */
+	private static final int GAMES_PER_TASK = 4;
+
+	private HeadlessRockGalaxy[] games;
+	private ForkJoinPool pool;
+	private boolean autopilot = true;
+	private long simulatedTicks = 0;
+	private long elapsedTime = 0;
+
+	/**
+	 * Constructor
+	 * @param count the number of games
+	 * @param seed the seed of the batch, game n is seeded with seed + n
+	 * @param parallelism the number of threads simulating the games
+	 */
+	public BatchSimulator(int count, long seed, int parallelism)
+	{
+		RockGalaxyImages images = new RockGalaxyImages();
+		images.load(null);
+		games = new HeadlessRockGalaxy[count];
+		for (int n = 0; n < count; n++)
+		{
+			games[n] = new HeadlessRockGalaxy(RockGalaxy.SCREENWIDTH, RockGalaxy.SCREENHEIGHT, images, seed + n);
+		}
+		pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Get the number of games
+	 * @return the number of games
+	 */
+	public int getGameCount()
+	{
+		return games.length;
+	}
+
+	/**
+	 * Get a game of the batch
+	 * @param index the index of the game
+	 * @return the game
+	 */
+	public HeadlessRockGalaxy getGame(int index)
+	{
+		return games[index];
+	}
+
+	/**
+	 * Return true if the games are played by the autopilot, false if
+	 * their input is driven from outside
+	 * @return if the autopilot is enabled
+	 */
+	public boolean isAutopilot()
+	{
+		return autopilot;
+	}
+
+	/**
+	 * Choose whether the games are played by the autopilot
+	 * @param autopilot true to enable the autopilot
+	 */
+	public void setAutopilot(boolean autopilot)
+	{
+		this.autopilot = autopilot;
+	}
+
+	/**
+	 * Get the number of threads simulating the games
+	 * @return the parallelism of the pool
+	 */
+	public int getParallelism()
+	{
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Get the ticks simulated so far, summed over all the games
+	 * @return the number of simulated ticks
+	 */
+	public long getSimulatedTicks()
+	{
+		return simulatedTicks;
+	}
+
+	/**
+	 * Get the time spent simulating
+	 * @return the time, in nanoseconds
+	 */
+	public long getElapsedTime()
+	{
+		return elapsedTime;
+	}
+
+	/**
+	 * Get the simulation throughput so far
+	 * @return the ticks simulated per second, summed over all the games
+	 */
+	public double getTicksPerSecond()
+	{
+		return elapsedTime > 0 ? simulatedTicks * 1000000000.0 / elapsedTime : 0;
+	}
+
+	/**
+	 * Simulate some ticks of every game. Games are independent, so each one
+	 * runs all its ticks without waiting for the others
+	 * @param ticks the number of ticks to simulate
+	 */
+	public void run(long ticks)
+	{
+		long start = System.nanoTime();
+		pool.invoke(new StepTask(0, games.length, ticks));
+		elapsedTime += System.nanoTime() - start;
+		simulatedTicks += ticks * games.length;
+	}
+
+	/**
+	 * Stop the threads of the pool
+	 */
+	public void shutdown()
+	{
+		pool.shutdown();
+	}
+
+	/**
+	 * Simulates a range of games, splitting it until it's small enough
+	 */
+	private class StepTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 3184432617361152347L;
+
+		private int from;
+		private int to;
+		private long ticks;
+
+		StepTask(int from, int to, long ticks)
+		{
+			this.from = from;
+			this.to = to;
+			this.ticks = ticks;
+		}
+
+		protected void compute()
+		{
+			if (to - from <= GAMES_PER_TASK)
+			{
+				for (int n = from; n < to; n++)
+				{
+					step(games[n], ticks);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new StepTask(from, middle, ticks), new StepTask(middle, to, ticks));
+		}
+	}
+
+	private void step(HeadlessRockGalaxy game, long ticks)
+	{
+		for (long n = 0; n < ticks; n++)
+		{
+			if (autopilot)
+			{
+				game.autopilot();
+			}
+			game.tick();
+		}
+	}
+
+	/**
+	 * Simulate a batch of games and print the throughput.
+	 * Options: -games 1000 -ticks 1000 -threads (cpus) -seed 42
+	 * @param args the options
+	 */
+	public static void main(String[] args)
+	{
+		System.setProperty("java.awt.headless", "true");
+		int count = 1000;
+		long ticks = 1000;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long seed = 42;
+		for (int i = 0; i + 1 < args.length; i += 2)
+		{
+			if (args[i].equals("-games"))
+			{
+				count = Integer.parseInt(args[i + 1]);
+			}
+			else if (args[i].equals("-ticks"))
+			{
+				ticks = Long.parseLong(args[i + 1]);
+			}
+			else if (args[i].equals("-threads"))
+			{
+				threads = Integer.parseInt(args[i + 1]);
+			}
+			else if (args[i].equals("-seed"))
+			{
+				seed = Long.parseLong(args[i + 1]);
+			}
+			else
+			{
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		BatchSimulator batch = new BatchSimulator(count, seed, threads);
+		batch.run(ticks);
+		batch.shutdown();
+
+		long sprites = 0;
+		long score = 0;
+		for (int n = 0; n < batch.getGameCount(); n++)
+		{
+			sprites += batch.getGame(n).getSprites().size();
+			score += batch.getGame(n).getRules().getScore();
+		}
+		System.out.println(count + " games, " + ticks + " ticks each, " + threads + " threads");
+		System.out.println(batch.getSimulatedTicks() + " ticks in " + batch.getElapsedTime() / 1000000 + " ms, "
+				+ (long) batch.getTicksPerSecond() + " ticks/s, "
+				+ (long) (batch.getTicksPerSecond() / threads) + " ticks/s per thread");
+		System.out.println(sprites + " sprites, average score " + score / Math.max(1, count));
+	}
+}
@@ -0,0 +1,126 @@
+package rockGalaxy;
+/**
+ * Creates the images of the game in the pixel format of the screen, so that
+ * drawing them never converts their pixels. Such images are managed by
+ * Java2D, which keeps a copy of them in the memory of the graphics card as
+ * long as their pixels aren't accessed directly. Without a screen images
+ * have integer pixels: RGB if opaque, premultiplied ARGB otherwise, which
+ * are the formats drawn fastest by the software loops
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+class CompatibleImages
+{
+	private static GraphicsConfiguration configuration;
+	private static boolean configurationRead = false;
+
+	private CompatibleImages()
+	{
+	}
+
+	/**
+	 * Get the configuration of the screen
+	 * @return the default configuration of the default screen, null without a screen
+	 */
+	static synchronized GraphicsConfiguration getConfiguration()
+	{
+		if (!configurationRead)
+		{
+			if (!GraphicsEnvironment.isHeadless())
+			{
+				configuration = GraphicsEnvironment.getLocalGraphicsEnvironment()
+						.getDefaultScreenDevice().getDefaultConfiguration();
+			}
+			configurationRead = true;
+		}
+		return configuration;
+	}
+
+	/**
+	 * Create an empty image
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @param transparency Transparency.OPAQUE, BITMASK or TRANSLUCENT
+	 * @return the image, fully transparent if it isn't opaque
+	 */
+	static BufferedImage create(int width, int height, int transparency)
+	{
+		GraphicsConfiguration config = getConfiguration();
+		if (config != null)
+		{
+			return config.createCompatibleImage(width, height, transparency);
+		}
+		return new BufferedImage(width, height, transparency == Transparency.OPAQUE
+				? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+	}
+
+	/**
+	 * Create an image stored in the memory of the graphics card
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @return the image, null without a screen
+	 */
+	static VolatileImage createVolatile(int width, int height)
+	{
+		GraphicsConfiguration config = getConfiguration();
+		return config != null ? config.createCompatibleVolatileImage(width, height) : null;
+	}
+
+	/**
+	 * Return true if an image is in the pixel format of the screen
+	 * @param image the image
+	 * @return if the image is drawn without converting its pixels
+	 */
+	static boolean isCompatible(BufferedImage image)
+	{
+		GraphicsConfiguration config = getConfiguration();
+		if (config != null)
+		{
+			return image.getColorModel().equals(config.getColorModel(image.getTransparency()));
+		}
+		int type = image.getTransparency() == Transparency.OPAQUE
+				? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE;
+		return image.getType() == type;
+	}
+
+	/**
+	 * Convert an image to the pixel format of the screen
+	 * @param image the image to convert
+	 * @return the converted image, or the image itself if already compatible
+	 */
+	static BufferedImage toCompatible(BufferedImage image)
+	{
+		if (isCompatible(image))
+		{
+			return image;
+		}
+		return copy(image, image.getWidth(), image.getHeight(), image.getTransparency());
+	}
+
+	/**
+	 * Copy any image to a new image in the pixel format of the screen
+	 * @param image the image to copy
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @param transparency the transparency of the image
+	 * @return the copy
+	 */
+	static BufferedImage copy(Image image, int width, int height, int transparency)
+	{
+		BufferedImage compatible = create(width, height, transparency);
+		Graphics2D g = compatible.createGraphics();
+		g.setComposite(AlphaComposite.Src);
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+		return compatible;
+	}
+}
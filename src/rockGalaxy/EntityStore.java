@@ -0,0 +1,282 @@
+package rockGalaxy;
+/**
+ * An array backed container of sprites.
+ * Sprites are kept packed at the beginning of the array, removal moves the
+ * last sprite in the freed position. Every sprite also gets a handle that
+ * stays valid while the sprite is in the store, wherever it is moved.
+ * The state of the sprites is kept in a SpriteData, whose rows are packed
+ * like the sprites: the sprite in position i reads and writes row i.
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+class EntityStore<E extends Sprite> extends AbstractList<E> implements RandomAccess
+{
+	private static final int SLOT_BITS = 20;
+	private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+	private static final int GENERATION_MASK = (1 << (31 - SLOT_BITS)) - 1;
+
+	/* Packed entities and the slot each one owns */
+	private Object[] entities;
+	private int[] entitySlot;
+	private SpriteData data;
+	private int size = 0;
+
+	/* Slots, indexed by handle */
+	private int[] slotIndex;
+	private int[] slotGeneration;
+	private int[] freeSlots;
+	private int freeCount = 0;
+	private int slotCount = 0;
+
+	/**
+	 * Constructor
+	 * @param capacity the initial capacity of the store
+	 */
+	EntityStore(int capacity)
+	{
+		capacity = Math.max(capacity, 16);
+		entities = new Object[capacity];
+		entitySlot = new int[capacity];
+		data = new SpriteData(capacity);
+		slotIndex = new int[capacity];
+		slotGeneration = new int[capacity];
+		freeSlots = new int[capacity];
+	}
+
+	/**
+	 * Insert a sprite in the store
+	 * @param entity the sprite to insert
+	 * @return the handle of the sprite
+	 */
+	public int insert(E entity)
+	{
+		if (entity.getHandle() >= 0)
+		{
+			throw new IllegalStateException("The sprite is already stored");
+		}
+		int slot;
+		if (freeCount > 0)
+		{
+			slot = freeSlots[--freeCount];
+		}
+		else
+		{
+			if (slotCount > SLOT_MASK)
+			{
+				throw new IllegalStateException("Too many entities: " + slotCount);
+			}
+			if (slotCount == slotIndex.length)
+			{
+				slotIndex = Arrays.copyOf(slotIndex, slotCount * 2);
+				slotGeneration = Arrays.copyOf(slotGeneration, slotCount * 2);
+				freeSlots = Arrays.copyOf(freeSlots, slotCount * 2);
+			}
+			slot = slotCount++;
+		}
+
+		if (size == entities.length)
+		{
+			entities = Arrays.copyOf(entities, size * 2);
+			entitySlot = Arrays.copyOf(entitySlot, size * 2);
+			data.grow(size * 2);
+		}
+		entity.attach(data, size);
+		entities[size] = entity;
+		entitySlot[size] = slot;
+		slotIndex[slot] = size;
+		size++;
+		modCount++;
+		entity.setHandle(handle(slot));
+		return entity.getHandle();
+	}
+
+	/**
+	 * Get the state of the sprites, row i belongs to the sprite in position i
+	 * @return the data of the sprites
+	 */
+	SpriteData getData()
+	{
+		return data;
+	}
+
+	/**
+	 * Get the sprite associated with a handle
+	 * @param handle the handle of the sprite
+	 * @return the sprite, or null if it's not in the store anymore
+	 */
+	public E lookup(int handle)
+	{
+		if (!valid(handle))
+		{
+			return null;
+		}
+		return get(slotIndex[handle & SLOT_MASK]);
+	}
+
+	/**
+	 * Remove the sprite associated with a handle
+	 * @param handle the handle of the sprite
+	 * @return true if the sprite was in the store
+	 */
+	public boolean release(int handle)
+	{
+		if (!valid(handle))
+		{
+			return false;
+		}
+		remove(slotIndex[handle & SLOT_MASK]);
+		return true;
+	}
+
+	/**
+	 * Get the handle of the sprite in a position
+	 * @param index the position of the sprite
+	 * @return the handle of the sprite
+	 */
+	public int handleAt(int index)
+	{
+		checkIndex(index);
+		return handle(entitySlot[index]);
+	}
+
+	/**
+	 * Find the first alive sprite starting from a position
+	 * @param index the position to start from
+	 * @return the position of the alive sprite, -1 if there are no more
+	 */
+	public int nextAlive(int index)
+	{
+		for (int i = index; i < size; i++)
+		{
+			if (data.alive[i])
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Remove every sprite which is not alive
+	 * @return the number of removed sprites
+	 */
+	public int removeDead()
+	{
+		int removed = 0;
+		for (int i = size - 1; i >= 0; i--)
+		{
+			if (!data.alive[i])
+			{
+				remove(i);
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index)
+	{
+		checkIndex(index);
+		return (E) entities[index];
+	}
+
+	@Override
+	public E set(int index, E entity)
+	{
+		E old = get(index);
+		old.detach();
+		entity.attach(data, index);
+		entities[index] = entity;
+		entity.setHandle(old.getHandle());
+		old.setHandle(-1);
+		return old;
+	}
+
+	@Override
+	public boolean add(E entity)
+	{
+		insert(entity);
+		return true;
+	}
+
+	/**
+	 * Remove the sprite in a position, replacing it with the last one
+	 * @param index the position of the sprite to remove
+	 * @return the removed sprite
+	 */
+	@Override
+	public E remove(int index)
+	{
+		E old = get(index);
+		old.detach();
+		int slot = entitySlot[index];
+		int last = size - 1;
+		if (index != last)
+		{
+			entities[index] = entities[last];
+			entitySlot[index] = entitySlot[last];
+			slotIndex[entitySlot[index]] = index;
+			data.copy(last, data, index);
+			((Sprite) entities[index]).setRow(index);
+		}
+		entities[last] = null;
+		size--;
+		freeSlot(slot);
+		modCount++;
+		old.setHandle(-1);
+		return old;
+	}
+
+	@Override
+	public void clear()
+	{
+		for (int i = 0; i < size; i++)
+		{
+			freeSlot(entitySlot[i]);
+			((Sprite) entities[i]).detach();
+			((Sprite) entities[i]).setHandle(-1);
+			entities[i] = null;
+		}
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	private void freeSlot(int slot)
+	{
+		slotIndex[slot] = -1;
+		slotGeneration[slot] = (slotGeneration[slot] + 1) & GENERATION_MASK;
+		freeSlots[freeCount++] = slot;
+	}
+
+	private boolean valid(int handle)
+	{
+		int slot = handle & SLOT_MASK;
+		return handle >= 0 && slot < slotCount && slotIndex[slot] >= 0
+				&& slotGeneration[slot] == (handle >>> SLOT_BITS);
+	}
+
+	private int handle(int slot)
+	{
+		return (slotGeneration[slot] << SLOT_BITS) | slot;
+	}
+
+	private void checkIndex(int index)
+	{
+		if (index < 0 || index >= size)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+}
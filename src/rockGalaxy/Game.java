@@ -6,24 +6,40 @@ package rockGalaxy;
  */
 
 import java.applet.Applet;
+import java.awt.BorderLayout;
+import java.awt.Canvas;
+import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Toolkit;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
-import java.util.LinkedList;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
 abstract class Game extends Applet implements Runnable, KeyListener, MouseListener, MouseMotionListener
 {
 
 	private static final long serialVersionUID = -2065238822360203370L;
+
+	/* Input event types, also used by the input log */
+	static final int KEY_DOWN = 0;
+	static final int KEY_UP = 1;
+	static final int MOUSE_DOWN = 2;
+	static final int MOUSE_UP = 3;
+	static final int MOUSE_MOVE = 4;
+	static final int MOUSE_DRAG = 5;
 	
     abstract void gameStartup();
     abstract void gameTimedUpdate();
     abstract void gameRefreshScreen();
+    abstract void gameCaptureScreen(WorldSnapshot snapshot);
     abstract void gameShutdown();
     abstract void gameKeyDown(int keyCode);
     abstract void gameKeyUp(int keyCode);
@@ -31,14 +47,42 @@ abstract class Game extends Applet implements Runnable, KeyListener, MouseListen
     abstract void gameMouseUp();
     abstract void gameMouseMove();
     abstract void spriteUpdate(AnimatedSprite sprite);
-    abstract void spriteDraw(AnimatedSprite sprite);
+    abstract void spriteDraw(WorldSnapshot snapshot, int index);
     abstract void spriteDying(AnimatedSprite sprite);
     abstract void spriteCollision(AnimatedSprite spr1, AnimatedSprite spr2);
 
 	private Thread gameloop;
-    private LinkedList<AnimatedSprite> spritesList;
-    private BufferedImage backbuffer;
-    private Graphics2D g2d;
+	private Thread renderloop;
+    private GameWorld world = new GameWorld()
+    {
+        void spriteUpdate(AnimatedSprite sprite)
+        {
+            Game.this.spriteUpdate(sprite);
+        }
+
+        void spriteDying(AnimatedSprite sprite)
+        {
+            Game.this.spriteDying(sprite);
+        }
+
+        void spriteCollision(AnimatedSprite spr1, AnimatedSprite spr2)
+        {
+            Game.this.spriteCollision(spr1, spr2);
+        }
+
+        void timedUpdate()
+        {
+            gameTimedUpdate();
+        }
+    };
+    private Canvas canvas;
+    private BufferStrategy strategy;
+    private VolatileBuffer backbuffer;
+    private Graphics2D backbufferGraphics;
+    private volatile Graphics2D g2d;
+    private boolean framePacing = true;
+    private volatile RotationCache rotationCache = new RotationCache(64, 64L * 1024 * 1024);
+    private volatile TextureAtlas textureAtlas = new TextureAtlas(1024, 8);
     private int screenWidth;
     private int screenHeight;
 
@@ -48,8 +92,22 @@ abstract class Game extends Applet implements Runnable, KeyListener, MouseListen
     private int frameCount = 0;
     private int frameRate = 0;
     private int desiredRate;
-    private long startTime = System.currentTimeMillis();
-    private boolean gamePaused = false;
+    private long startTime = System.nanoTime();
+    private int maxCatchUpSteps = 5;
+    private volatile double interpolation = 0;
+    private long initTime;
+    private volatile long timeToFirstFrame = -1;
+
+    /* Snapshots exchanged between the simulation and the render thread */
+    private AtomicReference<WorldSnapshot> latestSnapshot = new AtomicReference<WorldSnapshot>(new WorldSnapshot());
+    private WorldSnapshot simulationSnapshot = new WorldSnapshot();
+    private WorldSnapshot renderSnapshot = new WorldSnapshot();
+    /* Never reset, unlike the tick count, which goes back when a game is loaded */
+    private long publishCount = 0;
+
+    /* Input events, handled by the simulation thread at the beginning of a tick */
+    private ConcurrentLinkedQueue<int[]> inputEvents = new ConcurrentLinkedQueue<int[]>();
+    private InputRecorder inputRecorder;
     
     /**
      * Get the applet of the game
@@ -66,7 +124,7 @@ abstract class Game extends Applet implements Runnable, KeyListener, MouseListen
      */
     public boolean isGamePaused()
     {
-    	return gamePaused;
+    	return world.isPaused();
     }
     
     /**
@@ -74,7 +132,7 @@ abstract class Game extends Applet implements Runnable, KeyListener, MouseListen
      */
     public void pauseGame()
     {
-    	gamePaused = true;
+    	world.pause();
     }
     
     /**
@@ -82,16 +140,91 @@ abstract class Game extends Applet implements Runnable, KeyListener, MouseListen
      */
     public void resumeGame()
     {
-    	gamePaused = false;
+    	world.resume();
     }
     
+    /**
+     * Get the simulated part of the game
+     * @return the world of the game
+     */
+    public GameWorld getWorld()
+    {
+    	return world;
+    }
+
+    /**
+     * Record the input handled by the game, so that the game can be replayed.
+     * Must be set before the game starts, the log is closed when it stops
+     * or when a saved game is loaded
+     * @param recorder the recorder of the input, null to stop recording
+     */
+    public void setInputRecorder(InputRecorder recorder)
+    {
+    	inputRecorder = recorder;
+    }
+
+    /**
+     * Return true if collisions are tested against every sprite, false if the
+     * spatial hash broadphase is used
+     * @return if the brute force collision test is in use
+     */
+    public boolean isBruteForceCollisions()
+    {
+    	return world.isBruteForceCollisions();
+    }
+
+    /**
+     * Choose between the brute force collision test and the spatial hash broadphase
+     * @param bruteForce true to test every pair of sprites
+     */
+    public void setBruteForceCollisions(boolean bruteForce)
+    {
+    	world.setBruteForceCollisions(bruteForce);
+    }
+
     /**
      * Get sprites of the game
-     * @return a list of sprites
+     * @return the store of the sprites, usable as a list
+     */
+    public EntityStore<AnimatedSprite> getSprites()
+    {
+    	return world.getSprites();
+    }
+
+    /**
+     * Get the number of sprites of the game, including the ones spawned
+     * but not yet added to the list
+     * @return the number of sprites
+     */
+    public int getSpriteCount()
+    {
+    	return world.getSpriteCount();
+    }
+
+    /**
+     * Add a sprite to the game at the end of the current tick
+     * @param sprite the sprite to add
+     */
+    public void spawnSprite(AnimatedSprite sprite)
+    {
+    	world.spawnSprite(sprite);
+    }
+
+    /**
+     * Kill a sprite, it will be removed from the game at the end of the current tick
+     * @param sprite the sprite to kill
      */
-    public LinkedList<AnimatedSprite> getSprites()
+    public void killSprite(AnimatedSprite sprite)
     {
-    	return spritesList;
+    	world.killSprite(sprite);
+    }
+
+    /**
+     * Remove every sprite from the game, discarding the pending spawns
+     */
+    public void clearSprites()
+    {
+    	world.clearSprites();
     }
 
     /**
@@ -107,11 +240,88 @@ abstract class Game extends Applet implements Runnable, KeyListener, MouseListen
         screenHeight = height;
     }
 
+    /**
+     * Get the graphics to draw on. While a frame is drawn this is the graphics
+     * of the frame, so it must be asked again for every frame
+     * @return the graphics
+     */
     public Graphics2D graphics()
     {
     	return g2d;
     }
 
+    /**
+     * Get the snapshot being drawn. The screen must be drawn from it, not
+     * from the state of the game, which the simulation thread is changing
+     * @return the snapshot of the frame, to be read by the render thread only
+     */
+    public WorldSnapshot snapshot()
+    {
+    	return renderSnapshot;
+    }
+
+    /**
+     * Get the cache of rotated sprite images
+     * @return the rotation cache, null if sprites are rotated while drawing
+     */
+    public RotationCache getRotationCache()
+    {
+    	return rotationCache;
+    }
+
+    /**
+     * Set the resolution and the memory budget of the rotated sprite images.
+     * Angles are rounded to a multiple of 360 / steps degree
+     * @param steps the number of angles a full turn is divided into, 0 to rotate
+     * sprites while drawing
+     * @param budget the maximum memory used by rotated images, in bytes
+     */
+    public void setRotationCache(int steps, long budget)
+    {
+    	rotationCache = steps > 0 ? new RotationCache(steps, budget) : null;
+    }
+
+    /**
+     * Get the atlas the sprite images are drawn from
+     * @return the texture atlas, null if every sprite is drawn from its own image
+     */
+    public TextureAtlas getTextureAtlas()
+    {
+    	return textureAtlas;
+    }
+
+    /**
+     * Set the size of the atlas the sprite images are drawn from. Sprites
+     * are drawn page by page, so sprites of different pages may overlap
+     * in a different order than they were added
+     * @param pageSize the side of the pages, in pixels
+     * @param maxPages the maximum number of pages, 0 to draw every sprite from its own image
+     */
+    public void setTextureAtlas(int pageSize, int maxPages)
+    {
+    	textureAtlas = maxPages > 0 ? new TextureAtlas(pageSize, maxPages) : null;
+    }
+
+    /**
+     * Return true if frames are drawn at the frame rate of the game, false if
+     * they are drawn as fast as possible
+     * @return if frame pacing is enabled
+     */
+    public boolean isFramePacing()
+    {
+    	return framePacing;
+    }
+
+    /**
+     * Choose whether frames are drawn at the frame rate of the game and synchronized
+     * with the display, or as fast as possible
+     * @param pacing true to pace the frames
+     */
+    public void setFramePacing(boolean pacing)
+    {
+    	framePacing = pacing;
+    }
+
     /**
      * Get the frame rate of the game
      * @return the frame rate
@@ -121,6 +331,46 @@ abstract class Game extends Applet implements Runnable, KeyListener, MouseListen
     	return frameRate;
     }
 
+    /**
+     * Get the time from the initialization of the applet to the first frame
+     * shown, startup included
+     * @return the time to the first frame, in nanoseconds, -1 if no frame has been shown yet
+     */
+    public long getTimeToFirstFrame()
+    {
+    	return timeToFirstFrame;
+    }
+
+    /**
+     * Get the maximum number of steps simulated before drawing, when the
+     * game is late
+     * @return the maximum number of catch up steps
+     */
+    public int getMaxCatchUpSteps()
+    {
+    	return maxCatchUpSteps;
+    }
+
+    /**
+     * Set the maximum number of steps simulated before drawing, when the
+     * game is late. If the game is later than that, the simulation slows down
+     * @param steps the maximum number of catch up steps
+     */
+    public void setMaxCatchUpSteps(int steps)
+    {
+    	maxCatchUpSteps = Math.max(1, steps);
+    }
+
+    /**
+     * Get the fraction of the step elapsed since the last simulated step,
+     * used to draw sprites between their previous and current position
+     * @return the interpolation factor of the frame being drawn, from 0 to 1
+     */
+    public double getInterpolation()
+    {
+    	return interpolation;
+    }
+
     public boolean mouseButton(int btn)
     {
     	return mouseButtons[btn];
@@ -140,13 +390,25 @@ abstract class Game extends Applet implements Runnable, KeyListener, MouseListen
      */
     public void init()
     {
-        backbuffer = new BufferedImage(screenWidth, screenHeight, BufferedImage.TYPE_INT_RGB);
-        g2d = backbuffer.createGraphics();
-        spritesList = new LinkedList<AnimatedSprite>();
+        initTime = System.nanoTime();
+        backbuffer = new VolatileBuffer(screenWidth, screenHeight);
+        backbufferGraphics = backbuffer.getGraphics();
+        g2d = backbufferGraphics;
+
+        /* Frames are drawn by the render thread on the canvas, not by repaint() */
+        canvas = new Canvas();
+        canvas.setIgnoreRepaint(true);
+        canvas.setPreferredSize(new Dimension(screenWidth, screenHeight));
+        setIgnoreRepaint(true);
+        setLayout(new BorderLayout());
+        add(canvas, BorderLayout.CENTER);
 
         addKeyListener(this);
         addMouseListener(this);
         addMouseMotionListener(this);
+        canvas.addKeyListener(this);
+        canvas.addMouseListener(this);
+        canvas.addMouseMotionListener(this);
 
         gameStartup();
         getApplet().setFocusable(true);
@@ -157,72 +419,314 @@ abstract class Game extends Applet implements Runnable, KeyListener, MouseListen
      */
     public void update(Graphics g)
     {
-        frameCount++;
-        if (System.currentTimeMillis() > startTime + 1000)
-        {
-            startTime = System.currentTimeMillis();
-            frameRate = frameCount;
-            frameCount = 0;
-            purgeSprites();
-        }
-
-        gameRefreshScreen();
-        
-        if (!isGamePaused())
-        {
-            drawSprites();
-        }
-
         paint(g);
     }
 
      public void paint(Graphics g)
      {
-         g.drawImage(backbuffer, 0, 0, this);
+         g.drawImage(backbuffer.getImage(), 0, 0, this);
      }
 
      public void start()
      {
          gameloop = new Thread(this);
+         renderloop = new Thread(new Runnable()
+         {
+             public void run()
+             {
+                 renderLoop();
+             }
+         });
          gameloop.start();
+         renderloop.start();
+         canvas.requestFocus();
      }
      
      /**
-      * Run the applet
+      * Run the applet: the simulation advances in fixed steps of 1 / frameRate
+      * seconds, whatever the time spent drawing, and publishes a snapshot of
+      * the sprites for the render thread
       */
      public void run()
      {
          Thread thread = Thread.currentThread();
+         long tickLength = 1000000000L / desiredRate;
+         long previousTime = System.nanoTime();
+         long lag = 0;
 
          while (thread == gameloop)
+         {
+             long now = System.nanoTime();
+             lag += now - previousTime;
+             previousTime = now;
+
+             int steps = 0;
+             while (lag >= tickLength && steps < maxCatchUpSteps)
+             {
+                 tick();
+                 lag -= tickLength;
+                 steps++;
+             }
+             if (lag >= tickLength)
+             {
+                 /* Too far behind to catch up, the backlog is dropped */
+                 lag %= tickLength;
+             }
+             if (steps > 0)
+             {
+                 publishSnapshot(now - lag);
+             }
+
+             long sleep = tickLength - lag - (System.nanoTime() - now);
+             if (sleep > 0)
+             {
+                 try
+                 {
+                     Thread.sleep(sleep / 1000000, (int) (sleep % 1000000));
+                 }
+                 catch(InterruptedException e)
+                 {
+                     e.printStackTrace();
+                 }
+             }
+         }
+     }
+
+     /**
+      * Advance the game of a single step
+      */
+     protected void tick()
+     {
+         int[] event;
+         while ((event = inputEvents.poll()) != null)
+         {
+             handleInput(event);
+         }
+
+         world.tick();
+     }
+
+     /**
+      * Write an input event in the input log, if the game is recorded.
+      * Only the events that reach the rules must be recorded, the replay
+      * hands every event of the log to the rules
+      * @param type the type of the event
+      * @param code the key code or the mouse button
+      * @param x the abscissa of the mouse
+      * @param y the ordinate of the mouse
+      */
+     protected void recordInput(int type, int code, int x, int y)
+     {
+         if (inputRecorder != null)
+         {
+             try
+             {
+                 inputRecorder.record(world.getTickCount(), type, code, x, y);
+             }
+             catch (IOException e)
+             {
+                 e.printStackTrace();
+                 inputRecorder = null;
+             }
+         }
+     }
+
+     /**
+      * End the input log, if the game is recorded. The log can't follow the
+      * game back in time, so it must end before a saved game is loaded
+      */
+     protected void stopRecording()
+     {
+         if (inputRecorder != null)
          {
              try
              {
-                 Thread.sleep(1000 / desiredRate);
+                 inputRecorder.close(world.getTickCount(), world.checksum());
              }
-             catch(InterruptedException e)
+             catch (IOException e)
              {
                  e.printStackTrace();
              }
+             inputRecorder = null;
+         }
+     }
+
+     /**
+      * Copy the sprites into a snapshot and make it the latest one
+      * @param time the time of the last simulated step, in nanoseconds
+      */
+     private void publishSnapshot(long time)
+     {
+         simulationSnapshot.capture(world.getSprites(), ++publishCount, world.getTickCount(), time, isGamePaused());
+         gameCaptureScreen(simulationSnapshot);
+         simulationSnapshot = latestSnapshot.getAndSet(simulationSnapshot);
+     }
+
+     /**
+      * Draw the latest snapshot, at the desired frame rate if frame pacing is
+      * enabled, until the applet stops
+      */
+     private void renderLoop()
+     {
+         Thread thread = Thread.currentThread();
+         long frameLength = 1000000000L / desiredRate;
+         long tickLength = 1000000000L / desiredRate;
 
-             if (!isGamePaused()) {
-                 updateSprites();
-                 testCollisions();
+         while (thread == renderloop)
+         {
+             long now = System.nanoTime();
+             if (latestSnapshot.get().getSequence() > renderSnapshot.getSequence())
+             {
+                 renderSnapshot = latestSnapshot.getAndSet(renderSnapshot);
+             }
+             double alpha = (double) (now - renderSnapshot.getTime()) / tickLength;
+             interpolation = Math.max(0.0, Math.min(1.0, alpha));
+
+             renderFrame();
+
+             long sleep = frameLength - (System.nanoTime() - now);
+             if (!framePacing)
+             {
+                 Thread.yield();
              }
-             gameTimedUpdate();
-             repaint();
+             else if (sleep > 0)
+             {
+                 try
+                 {
+                     Thread.sleep(sleep / 1000000, (int) (sleep % 1000000));
+                 }
+                 catch(InterruptedException e)
+                 {
+                     e.printStackTrace();
+                 }
+             }
+         }
+     }
+
+     /**
+      * Draw a frame and show it. Frames are drawn straight in the buffers of
+      * the canvas; until the canvas is on screen they are drawn in the back
+      * buffer and copied on the applet
+      */
+     private void renderFrame()
+     {
+         frameCount++;
+         if (System.nanoTime() - startTime > 1000000000L)
+         {
+             startTime = System.nanoTime();
+             frameRate = frameCount;
+             frameCount = 0;
+         }
+
+         if (strategy == null && canvas.isDisplayable())
+         {
+             canvas.createBufferStrategy(2);
+             strategy = canvas.getBufferStrategy();
+         }
+
+         if (strategy == null)
+         {
+             do
+             {
+                 backbufferGraphics = backbuffer.validate();
+                 drawFrame(backbufferGraphics);
+             }
+             while (backbuffer.contentsLost());
+             Graphics g = getGraphics();
+             if (g != null)
+             {
+                 paint(g);
+                 g.dispose();
+             }
+         }
+         else
+         {
+             do
+             {
+                 do
+                 {
+                     Graphics2D g = (Graphics2D) strategy.getDrawGraphics();
+                     drawFrame(g);
+                     g.dispose();
+                 }
+                 while (strategy.contentsRestored());
+                 strategy.show();
+             }
+             while (strategy.contentsLost());
+         }
+
+         if (framePacing)
+         {
+             Toolkit.getDefaultToolkit().sync();
+         }
+
+         if (timeToFirstFrame < 0)
+         {
+             timeToFirstFrame = System.nanoTime() - initTime;
+             System.out.println("First frame shown " + timeToFirstFrame / 1000000 + " ms after startup");
          }
      }
 
+     /**
+      * Draw the screen and the sprites of the latest snapshot
+      * @param g the graphics of the frame
+      */
+     private void drawFrame(Graphics2D g)
+     {
+         g2d = g;
+         gameRefreshScreen();
+
+         if (!renderSnapshot.isPaused())
+         {
+             drawSprites();
+         }
+         g2d = backbufferGraphics;
+     }
+
      /**
       * Stop the applet
       */
      public void stop()
      {
+         Thread loop = gameloop;
+         Thread render = renderloop;
          gameloop = null;
+         renderloop = null;
+         /* The render thread may be drawing a frame, it's joined before the buffers are released */
+         for (Thread thread : new Thread[] { loop, render })
+         {
+             if (thread != null)
+             {
+                 try
+                 {
+                     thread.join(1000);
+                 }
+                 catch(InterruptedException e)
+                 {
+                     e.printStackTrace();
+                 }
+             }
+         }
+         stopRecording();
          gameShutdown();
      }
 
+     /**
+      * Release the buffers of the canvas
+      */
+     public void destroy()
+     {
+         if (strategy != null)
+         {
+             strategy.dispose();
+             strategy = null;
+         }
+         if (backbuffer != null)
+         {
+             backbuffer.dispose();
+         }
+     }
+
      public void keyTyped(KeyEvent k)
      {
     	 
@@ -230,17 +734,67 @@ abstract class Game extends Applet implements Runnable, KeyListener, MouseListen
      
      public void keyPressed(KeyEvent k)
      {
-         gameKeyDown(k.getKeyCode());
+         postInput(KEY_DOWN, k.getKeyCode(), 0, 0);
      }
      
      public void keyReleased(KeyEvent k)
      {
-         gameKeyUp(k.getKeyCode());
+         postInput(KEY_UP, k.getKeyCode(), 0, 0);
+     }
+
+     /**
+      * Queue an input event, to be handled by the simulation thread
+      * @param type the type of the event
+      * @param code the key code or the mouse button
+      * @param x the abscissa of the mouse
+      * @param y the ordinate of the mouse
+      */
+     private void postInput(int type, int code, int x, int y)
+     {
+         inputEvents.add(new int[] { type, code, x, y });
      }
 
-     private void checkButtons(MouseEvent e)
+     /**
+      * Handle an input event
+      * @param event the type, the code and the mouse position of the event
+      */
+     private void handleInput(int[] event)
      {
-             switch(e.getButton())
+         if (event[0] == KEY_DOWN)
+         {
+             gameKeyDown(event[1]);
+             return;
+         }
+         if (event[0] == KEY_UP)
+         {
+             gameKeyUp(event[1]);
+             return;
+         }
+
+         checkButtons(event[1]);
+         mousePos.setX(event[2]);
+         mousePos.setY(event[3]);
+         switch(event[0])
+         {
+            case MOUSE_DOWN:
+                gameMouseDown();
+                break;
+            case MOUSE_UP:
+                gameMouseUp();
+                break;
+            case MOUSE_MOVE:
+                gameMouseMove();
+                break;
+            case MOUSE_DRAG:
+                gameMouseDown();
+                gameMouseMove();
+                break;
+         }
+     }
+
+     private void checkButtons(int button)
+     {
+             switch(button)
              {
                 case MouseEvent.BUTTON1:
                     mouseButtons[1] = true;
@@ -262,49 +816,32 @@ abstract class Game extends Applet implements Runnable, KeyListener, MouseListen
 
      public void mousePressed(MouseEvent e)
      {
-         checkButtons(e);
-         mousePos.setX(e.getX());
-         mousePos.setY(e.getY());
-         gameMouseDown();
+         postInput(MOUSE_DOWN, e.getButton(), e.getX(), e.getY());
      }
      
      public void mouseReleased(MouseEvent e)
      {
-         checkButtons(e);
-         mousePos.setX(e.getX());
-         mousePos.setY(e.getY());
-         gameMouseUp();
+         postInput(MOUSE_UP, e.getButton(), e.getX(), e.getY());
      }
      
      public void mouseMoved(MouseEvent e)
      {
-         checkButtons(e);
-         mousePos.setX(e.getX());
-         mousePos.setY(e.getY());
-         gameMouseMove();
+         postInput(MOUSE_MOVE, e.getButton(), e.getX(), e.getY());
      }
      
      public void mouseDragged(MouseEvent e)
      {
-         checkButtons(e);
-         mousePos.setX(e.getX());
-         mousePos.setY(e.getY());
-         gameMouseDown();
-         gameMouseMove();
+         postInput(MOUSE_DRAG, e.getButton(), e.getX(), e.getY());
      }
      
      public void mouseEntered(MouseEvent e)
      {
-         mousePos.setX(e.getX());
-         mousePos.setY(e.getY());
-         gameMouseMove();
+         postInput(MOUSE_MOVE, MouseEvent.NOBUTTON, e.getX(), e.getY());
      }
      
      public void mouseExited(MouseEvent e)
      {
-         mousePos.setX(e.getX());
-         mousePos.setY(e.getY());
-         gameMouseMove();
+         postInput(MOUSE_MOVE, MouseEvent.NOBUTTON, e.getX(), e.getY());
      }
      
      public void mouseClicked(MouseEvent e) { }
@@ -330,90 +867,27 @@ abstract class Game extends Applet implements Runnable, KeyListener, MouseListen
      }
 
      /**
-      * Update sprites position, rotation, animation, life and death animation
-      */
-     protected void updateSprites()
-     {
-         for (int i = 0; i < spritesList.size(); i++)
-         {
-             AnimatedSprite spr = (AnimatedSprite) spritesList.get(i);
-             if (spr.alive())
-             {
-                 spr.updatePosition();
-                 spr.updateRotation();
-                 spr.updateAnimation();
-                 spriteUpdate(spr);
-                 spr.updateLifetime();
-                 if (!spr.alive())
-                 {
-                     spriteDying(spr);
-                 }
-             }
-         }
-     }
-
-     /**
-      * Test collisions between sprites
-      */
-     protected void testCollisions()
-     {
-         for (int first=0; first < spritesList.size(); first++)
-         {
-             AnimatedSprite spr1 = (AnimatedSprite) spritesList.get(first);
-             if (spr1.alive())
-             {
-                 for (int second = 0; second < spritesList.size(); second++)
-                 {
-                     if (first != second)
-                     {
-                         AnimatedSprite spr2 = (AnimatedSprite) spritesList.get(second);
-                         if (spr2.alive())
-                         {
-                             if (spr2.collidesWith(spr1))
-                             {
-                                 spriteCollision(spr1, spr2);
-                                 break;
-                             }
-                             else
-                                spr1.setCollided(false);
-
-                         }
-                     }
-                 }
-             }
-         }
-     }
-
-     /**
-      * Draws alive sprites
+      * Draws the sprites of the latest snapshot. Called by the render thread
       */
      protected void drawSprites()
      {
-         for (int i = 0; i < spritesList.size(); i++)
+         double alpha = interpolation;
+         WorldSnapshot snapshot = renderSnapshot;
+         TextureAtlas atlas = textureAtlas;
+         snapshot.beginDraw(g2d, rotationCache);
+         if (atlas != null)
          {
-             AnimatedSprite spr = (AnimatedSprite) spritesList.get(i);
-             if (spr.alive())
+             snapshot.drawBatched(g2d, alpha, atlas);
+             for (int i = 0; i < snapshot.getCount(); i++)
              {
-                 spr.updateFrame();
-                 spr.transform();
-                 spr.draw();
-                 spriteDraw(spr);
+                 spriteDraw(snapshot, i);
              }
+             return;
          }
-     }
-
-     /**
-      * Removes dead sprites
-      */
-     private void purgeSprites()
-     {
-    	 for (int i = 0; i < spritesList.size(); i++)
+         for (int i = 0; i < snapshot.getCount(); i++)
          {
-             AnimatedSprite spr = (AnimatedSprite) spritesList.get(i);
-             if (!spr.alive())
-             {
-                 spritesList.remove(i);
-             }
+             snapshot.draw(i, g2d, alpha);
+             spriteDraw(snapshot, i);
          }
      }
 
@@ -0,0 +1,62 @@
+package rockGalaxy;
+/**
+ * A random generator giving the same numbers as java.util.Random, whose
+ * state can be read and restored, so that a saved game goes on exactly as
+ * it would have. It isn't thread safe: a game is simulated by one thread
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.util.Random;
+
+class GameRandom extends Random
+{
+	private static final long serialVersionUID = -3316742716358712402L;
+
+	/* Same linear congruential generator of java.util.Random */
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	private long state;
+
+	/**
+	 * Constructor
+	 * @param seed the seed of the generator
+	 */
+	GameRandom(long seed)
+	{
+		super(seed);
+	}
+
+	@Override
+	public synchronized void setSeed(long seed)
+	{
+		super.setSeed(seed);
+		state = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	@Override
+	protected int next(int bits)
+	{
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return (int) (state >>> (48 - bits));
+	}
+
+	/**
+	 * Get the internal state of the generator
+	 * @return the state
+	 */
+	public long getState()
+	{
+		return state;
+	}
+
+	/**
+	 * Restore a state got from getState()
+	 * @param state the state
+	 */
+	public void setState(long state)
+	{
+		this.state = state & MASK;
+	}
+}
@@ -0,0 +1,330 @@
+package rockGalaxy;
+/**
+ * A compact binary snapshot of a game: the state of the world, the state
+ * of the rules and every sprite as a fixed size record, so that a game can
+ * be saved and restored in a single pass over a buffer.
+ * The snapshot starts with a header: the magic number, the version, the
+ * tick count, the paused flag and the number of sprites, followed by the
+ * state of the rules (see RockGalaxyRules.writeState()) and the sprites,
+ * SPRITE_SIZE bytes each. Images are saved as their index in
+ * RockGalaxyImages, so a snapshot can only be restored by the same version
+ * of the game. Files are written and read through memory mapped buffers
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.awt.Image;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+class GameSave
+{
+	static final int MAGIC = 0x5247534E; // "RGSN"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + RockGalaxyRules.STATE_SIZE;
+	static final int SPRITE_SIZE = 128;
+
+	private static final int ALIVE = 1;
+	private static final int COLLIDED = 2;
+
+	/**
+	 * Get the size of the snapshot of a game
+	 * @param sprites the number of sprites of the game
+	 * @return the size, in bytes
+	 */
+	static int size(int sprites)
+	{
+		return HEADER_SIZE + sprites * SPRITE_SIZE;
+	}
+
+	/**
+	 * Write the snapshot of a game. The game must be between two ticks,
+	 * with no sprite spawned but not yet added to the world
+	 * @param rules the rules of the game
+	 * @param buffer the buffer to write to, with at least size() bytes remaining
+	 */
+	static void write(RockGalaxyRules rules, ByteBuffer buffer)
+	{
+		GameWorld world = rules.getWorld();
+		EntityStore<AnimatedSprite> sprites = world.getSprites();
+		if (world.getSpriteCount() != sprites.size())
+		{
+			throw new IllegalStateException("A game can't be saved during a tick");
+		}
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putLong(world.getTickCount());
+		buffer.putInt(world.isPaused() ? 1 : 0);
+		buffer.putInt(sprites.size());
+		rules.writeState(buffer);
+
+		RockGalaxyImages images = rules.getImages();
+		SpritePool[] pools = rules.getSpritePools();
+		for (int i = 0; i < sprites.size(); i++)
+		{
+			AnimatedSprite spr = sprites.get(i);
+			int start = buffer.position();
+			buffer.putInt(spr.getSpriteType());
+			buffer.putInt(spr.getState());
+			buffer.put((byte) ((spr.alive() ? ALIVE : 0) | (spr.hasCollided() ? COLLIDED : 0)));
+			buffer.put((byte) indexOf(pools, spr.getPool()));
+			/* The image of an animated sprite is one of its frames, sliced again on restore */
+			buffer.putShort((short) (spr.totalFrames() > 0 ? -1 : images.getImageId(spr.getImage())));
+			buffer.putShort((short) images.getImageId(spr.getAnimImage()));
+			buffer.putShort((short) 0);
+			buffer.putDouble(spr.getPosition().X());
+			buffer.putDouble(spr.getPosition().Y());
+			buffer.putDouble(spr.getVelocity().X());
+			buffer.putDouble(spr.getVelocity().Y());
+			buffer.putDouble(spr.getPreviousX());
+			buffer.putDouble(spr.getPreviousY());
+			buffer.putDouble(spr.getFaceAngle());
+			buffer.putDouble(spr.getMoveAngle());
+			buffer.putDouble(spr.getRotationRate());
+			buffer.putInt(spr.getLifespan());
+			buffer.putInt(spr.getLifeage());
+			buffer.putInt(spr.getCurrentFrame());
+			buffer.putInt(spr.totalFrames());
+			buffer.putInt(spr.animationDirection());
+			buffer.putInt(spr.getFrameCount());
+			buffer.putInt(spr.frameDelay());
+			buffer.putInt(spr.getFrameWidth());
+			buffer.putInt(spr.getFrameHeight());
+			buffer.putInt(spr.getNumberOfAnimations());
+			buffer.position(start + SPRITE_SIZE);
+		}
+	}
+
+	/**
+	 * Restore a game from its snapshot. Every sprite is read and checked
+	 * before the game is touched, so a bad snapshot leaves the game as it
+	 * was. The sprites of the game are then given back to their pools and
+	 * replaced by the saved ones
+	 * @param rules the rules of the game
+	 * @param buffer the buffer to read from
+	 * @throws IOException if the buffer doesn't hold a valid snapshot of this version
+	 */
+	static void read(RockGalaxyRules rules, ByteBuffer buffer) throws IOException
+	{
+		if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+		{
+			throw new IOException("Not a saved game");
+		}
+		int version = buffer.getInt();
+		if (version != VERSION)
+		{
+			throw new IOException("Unsupported saved game version " + version);
+		}
+		long ticks = buffer.getLong();
+		boolean paused = buffer.getInt() != 0;
+		int count = buffer.getInt();
+		if (ticks < 0 || count < 0
+				|| buffer.remaining() < RockGalaxyRules.STATE_SIZE + (long) count * SPRITE_SIZE)
+		{
+			throw new IOException("Truncated saved game");
+		}
+		int statePosition = buffer.position();
+		buffer.position(statePosition + RockGalaxyRules.STATE_SIZE);
+
+		ArrayList<AnimatedSprite> loaded = new ArrayList<AnimatedSprite>(count);
+		try
+		{
+			for (int i = 0; i < count; i++)
+			{
+				loaded.add(readSprite(rules, buffer, i));
+			}
+		}
+		catch (IOException e)
+		{
+			for (int i = 0; i < loaded.size(); i++)
+			{
+				release(loaded.get(i));
+			}
+			throw e;
+		}
+
+		GameWorld world = rules.getWorld();
+		world.clearSprites();
+		world.setTickCount(ticks);
+		if (paused)
+		{
+			world.pause();
+		}
+		else
+		{
+			world.resume();
+		}
+		int end = buffer.position();
+		buffer.position(statePosition);
+		rules.readState(buffer);
+		buffer.position(end);
+		EntityStore<AnimatedSprite> sprites = world.getSprites();
+		for (int i = 0; i < count; i++)
+		{
+			sprites.add(loaded.get(i));
+		}
+	}
+
+	/**
+	 * Read a sprite of a snapshot, checking that its pool and its images
+	 * exist in this game
+	 * @param rules the rules of the game
+	 * @param buffer the buffer to read from, at the start of the sprite
+	 * @param index the index of the sprite, for the error message
+	 * @return the sprite, not yet added to the world
+	 * @throws IOException if the sprite refers to a pool or an image that doesn't exist
+	 */
+	private static AnimatedSprite readSprite(RockGalaxyRules rules, ByteBuffer buffer, int index)
+			throws IOException
+	{
+		RockGalaxyImages images = rules.getImages();
+		SpritePool[] pools = rules.getSpritePools();
+		int start = buffer.position();
+		int type = buffer.getInt();
+		int state = buffer.getInt();
+		int flags = buffer.get();
+		int pool = buffer.get();
+		int image = buffer.getShort();
+		int animImage = buffer.getShort();
+		if (pool < -1 || pool >= pools.length)
+		{
+			throw new IOException("Bad pool " + pool + " of sprite " + index);
+		}
+		if (image < -1 || image >= images.getImageCount() || animImage < -1 || animImage >= images.getImageCount())
+		{
+			throw new IOException("Bad image of sprite " + index);
+		}
+
+		AnimatedSprite spr = pool >= 0 ? pools[pool].obtain() : rules.createSprite();
+		spr.setSpriteType(type);
+		spr.setState(state);
+		spr.setAlive((flags & ALIVE) != 0);
+		spr.setCollided((flags & COLLIDED) != 0);
+		spr.setImage(images.getImage(image));
+		spr.setAnimImage(images.getImage(animImage));
+		buffer.getShort();
+		spr.getPosition().setX(buffer.getDouble());
+		spr.getPosition().setY(buffer.getDouble());
+		spr.getVelocity().setX(buffer.getDouble());
+		spr.getVelocity().setY(buffer.getDouble());
+		/* The load places the sprite, it doesn't come from its previous position on the screen */
+		buffer.getDouble();
+		buffer.getDouble();
+		spr.setFaceAngle(buffer.getDouble());
+		spr.setMoveAngle(buffer.getDouble());
+		spr.setRotationRate(buffer.getDouble());
+		spr.setLifespan(buffer.getInt());
+		spr.setLifeage(buffer.getInt());
+		spr.setCurrentFrame(buffer.getInt());
+		spr.setTotalFrames(buffer.getInt());
+		spr.setAnimationDirection(buffer.getInt());
+		spr.setFrameCount(buffer.getInt());
+		spr.setFrameDelay(buffer.getInt());
+		spr.setFrameWidth(buffer.getInt());
+		spr.setFrameHeight(buffer.getInt());
+		spr.setNumberOfAnimations(buffer.getInt());
+		buffer.position(start + SPRITE_SIZE);
+		if (!hasValidFrames(spr))
+		{
+			release(spr);
+			throw new IOException("Bad frames of sprite " + index);
+		}
+		spr.resetPreviousPosition();
+		spr.updateFrame();
+		spr.transform();
+		return spr;
+	}
+
+	/**
+	 * Return true if the frames of an animated sprite lie inside its sheet
+	 * @param spr the sprite
+	 * @return if the frames of the sprite can be sliced from its sheet
+	 */
+	private static boolean hasValidFrames(AnimatedSprite spr)
+	{
+		int total = spr.totalFrames();
+		if (total == 0)
+		{
+			return true;
+		}
+		int columns = spr.getNumberOfAnimations();
+		Image sheet = spr.getAnimImage();
+		if (total < 0 || columns <= 0 || sheet == null || spr.getFrameWidth() <= 0 || spr.getFrameHeight() <= 0)
+		{
+			return false;
+		}
+		long rows = (total + (long) columns - 1) / columns;
+		return Math.min(total, columns) * (long) spr.getFrameWidth() <= sheet.getWidth(null)
+				&& rows * spr.getFrameHeight() <= sheet.getHeight(null);
+	}
+
+	/**
+	 * Give a sprite read from a snapshot back to its pool, if any
+	 * @param spr the sprite
+	 */
+	private static void release(AnimatedSprite spr)
+	{
+		if (spr.getPool() != null)
+		{
+			spr.getPool().release(spr);
+		}
+	}
+
+	/**
+	 * Save a game to a file
+	 * @param rules the rules of the game
+	 * @param file the file to write
+	 * @throws IOException if the file can't be written
+	 */
+	static void save(RockGalaxyRules rules, Path file) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try
+		{
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					size(rules.getWorld().getSprites().size()));
+			write(rules, buffer);
+			buffer.force();
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Restore a game saved to a file
+	 * @param rules the rules of the game
+	 * @param file the file to read
+	 * @throws IOException if the file can't be read or isn't a saved game
+	 */
+	static void load(RockGalaxyRules rules, Path file) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try
+		{
+			read(rules, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+
+	private static int indexOf(SpritePool[] pools, SpritePool pool)
+	{
+		for (int i = 0; i < pools.length; i++)
+		{
+			if (pools[i] == pool)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,223 @@
+package rockGalaxy;
+/**
+ * A memory mapped file keeping the last snapshots of a game, written one
+ * after the other into a ring of fixed size slots. The oldest snapshot is
+ * overwritten by the newest, so the file never grows, and after a crash the
+ * last moments of the game can still be restored from it.
+ * The file starts with a header: the magic number, the version, the size
+ * and the number of the slots. Every slot holds the sequence number of its
+ * snapshot (0 if empty), the length of the snapshot and the snapshot, see
+ * GameSave. The sequence number is written last, so a slot being written
+ * when the game crashes is seen as empty
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+class GameSaveRing
+{
+	static final int MAGIC = 0x5247524E; // "RGRN"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 16;
+	static final int SLOT_HEADER_SIZE = 12;
+
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private int slotSize;
+	private int slotCount;
+	private long sequence = 0;
+
+	/**
+	 * Constructor, opens the ring file, creating it if it doesn't exist.
+	 * An existing file with the same slots goes on from its newest snapshot
+	 * @param file the ring file
+	 * @param slotCount the number of snapshots kept
+	 * @param maxSprites the maximum number of sprites of a snapshot
+	 * @throws IOException if the file can't be opened or mapped, or would be larger than 2 GB
+	 */
+	GameSaveRing(Path file, int slotCount, int maxSprites) throws IOException
+	{
+		long size = SLOT_HEADER_SIZE + GameSave.HEADER_SIZE + (long) maxSprites * GameSave.SPRITE_SIZE;
+		if (size > Integer.MAX_VALUE)
+		{
+			throw new IOException("Too many sprites for a ring of snapshots");
+		}
+		this.slotCount = slotCount;
+		slotSize = (int) size;
+		map(file);
+	}
+
+	private GameSaveRing(int slotCount, int slotSize)
+	{
+		this.slotCount = slotCount;
+		this.slotSize = slotSize;
+	}
+
+	/**
+	 * Open an existing ring file with the slots it was written with, to
+	 * restore its snapshots after the game is over
+	 * @param file the ring file
+	 * @return the ring
+	 * @throws IOException if the file can't be read or isn't a ring file
+	 */
+	static GameSaveRing open(Path file) throws IOException
+	{
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		long fileSize;
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try
+		{
+			fileSize = channel.size();
+			while (header.hasRemaining() && channel.read(header) >= 0)
+			{
+			}
+		}
+		finally
+		{
+			channel.close();
+		}
+		if (header.position() < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+		{
+			throw new IOException("Not a ring of snapshots: " + file);
+		}
+		int slotSize = header.getInt(8);
+		int slotCount = header.getInt(12);
+		/* A file of another size would be cleared by map() */
+		if (slotSize <= SLOT_HEADER_SIZE || slotCount <= 0 || fileSize != HEADER_SIZE + (long) slotSize * slotCount)
+		{
+			throw new IOException("Corrupted ring of snapshots: " + file);
+		}
+		GameSaveRing ring = new GameSaveRing(slotCount, slotSize);
+		ring.map(file);
+		return ring;
+	}
+
+	/**
+	 * Map the file, keeping its snapshots if it has the slots of the ring,
+	 * clearing it otherwise
+	 */
+	private void map(Path file) throws IOException
+	{
+		/* Offsets in the mapped buffer are ints */
+		long size = HEADER_SIZE + (long) slotSize * slotCount;
+		if (size > Integer.MAX_VALUE)
+		{
+			throw new IOException("Too many snapshots for a ring");
+		}
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		boolean same = channel.size() == size;
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		if (same && buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION
+				&& buffer.getInt(8) == slotSize && buffer.getInt(12) == slotCount)
+		{
+			for (int slot = 0; slot < slotCount; slot++)
+			{
+				sequence = Math.max(sequence, buffer.getLong(offset(slot)));
+			}
+		}
+		else
+		{
+			for (int slot = 0; slot < slotCount; slot++)
+			{
+				buffer.putLong(offset(slot), 0);
+			}
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, VERSION);
+			buffer.putInt(8, slotSize);
+			buffer.putInt(12, slotCount);
+		}
+	}
+
+	/**
+	 * Get the number of snapshots kept
+	 * @return the number of slots
+	 */
+	public int getSlotCount()
+	{
+		return slotCount;
+	}
+
+	/**
+	 * Get the number of snapshots written to the file, since it was created
+	 * @return the sequence number of the newest snapshot
+	 */
+	public long getSequence()
+	{
+		return sequence;
+	}
+
+	/**
+	 * Write the snapshot of a game over the oldest one
+	 * @param rules the rules of the game, between two ticks
+	 * @throws IllegalArgumentException if the game has more sprites than a slot can hold
+	 */
+	public void append(RockGalaxyRules rules)
+	{
+		int length = GameSave.size(rules.getWorld().getSprites().size());
+		if (SLOT_HEADER_SIZE + length > slotSize)
+		{
+			throw new IllegalArgumentException("Too many sprites for the slots of the ring");
+		}
+		int offset = offset((int) (sequence % slotCount));
+		buffer.putLong(offset, 0);
+		buffer.putInt(offset + 8, length);
+		GameSave.write(rules, slice(offset + SLOT_HEADER_SIZE, length));
+		buffer.putLong(offset, ++sequence);
+	}
+
+	/**
+	 * Restore one of the last snapshots
+	 * @param age 0 for the newest snapshot, 1 for the one before and so on
+	 * @param rules the rules of the game
+	 * @return false if there is no such snapshot
+	 * @throws IOException if the snapshot can't be restored
+	 */
+	public boolean restore(int age, RockGalaxyRules rules) throws IOException
+	{
+		if (age < 0 || age >= slotCount || age >= sequence)
+		{
+			return false;
+		}
+		int offset = offset((int) ((sequence - 1 - age) % slotCount));
+		if (buffer.getLong(offset) != sequence - age)
+		{
+			return false;
+		}
+		int length = buffer.getInt(offset + 8);
+		if (length < 0 || length > slotSize - SLOT_HEADER_SIZE)
+		{
+			throw new IOException("Corrupted ring slot");
+		}
+		GameSave.read(rules, slice(offset + SLOT_HEADER_SIZE, length));
+		return true;
+	}
+
+	/**
+	 * Flush the snapshots to the disk and close the file
+	 * @throws IOException if the file can't be closed
+	 */
+	public void close() throws IOException
+	{
+		buffer.force();
+		channel.close();
+	}
+
+	private int offset(int slot)
+	{
+		return (int) (HEADER_SIZE + (long) slot * slotSize);
+	}
+
+	private ByteBuffer slice(int offset, int length)
+	{
+		ByteBuffer slot = buffer.duplicate();
+		slot.position(offset);
+		slot.limit(offset + length);
+		return slot.slice();
+	}
+}
@@ -0,0 +1,656 @@
+package rockGalaxy;
+/**
+ * The simulated part of a game: the sprites, their update and the collision
+ * test. It doesn't depend on the applet, so it can be stepped without a display
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+abstract class GameWorld
+{
+	abstract void spriteUpdate(AnimatedSprite sprite);
+	abstract void spriteDying(AnimatedSprite sprite);
+	abstract void spriteCollision(AnimatedSprite spr1, AnimatedSprite spr2);
+
+	/**
+	 * Called at the end of every tick, after the sprites have been updated
+	 */
+	void timedUpdate()
+	{
+	}
+
+	private EntityStore<AnimatedSprite> spritesList = new EntityStore<AnimatedSprite>(256);
+	private SpriteCommandBuffer<AnimatedSprite> spriteCommands = new SpriteCommandBuffer<AnimatedSprite>();
+
+	/* Collision broadphase */
+	private SpatialHash broadphase = new SpatialHash(64, 512);
+	private boolean bruteForceCollisions = false;
+	private int[] collisionCandidates = new int[0];
+
+	/* Collision filter: the layers of every type, and the layers it collides with */
+	private boolean filteringCollisions = false;
+	private int[] collisionLayers = new int[0];
+	private int[] collisionMasks = new int[0];
+
+	/* Area the sprites warp around, and the types of sprites that warp */
+	private int warpWidth = 0;
+	private int warpHeight = 0;
+	private boolean[] warpingTypes = new boolean[0];
+
+	/* Moves the sprites, scalar or SIMD, see SpriteKernel */
+	private SpriteKernel kernel = SpriteKernel.create();
+
+	/* Positions of the sprites updated during the current tick */
+	private int[] updated = new int[0];
+
+	/* Parallel update: rows updated by a task, and the commands queued by each task */
+	private static final int ROWS_PER_TASK = 2048;
+	private ForkJoinPool updatePool = null;
+	private int parallelThreshold = 0;
+	private boolean updatingInParallel = false;
+	private int[] updatedCounts = new int[0];
+	private ArrayList<SpriteCommandBuffer<AnimatedSprite>> taskCommands = new ArrayList<SpriteCommandBuffer<AnimatedSprite>>();
+	private ThreadLocal<SpriteCommandBuffer<AnimatedSprite>> workerCommands = new ThreadLocal<SpriteCommandBuffer<AnimatedSprite>>();
+
+	private boolean paused = false;
+	private long tickCount = 0;
+
+	/**
+	 * Return true if the world is paused, false otherwise
+	 * @return if the world is paused
+	 */
+	public boolean isPaused()
+	{
+		return paused;
+	}
+
+	/**
+	 * Pause the world: sprites are neither updated nor tested for collisions
+	 */
+	public void pause()
+	{
+		paused = true;
+	}
+
+	/**
+	 * Exit from pause status
+	 */
+	public void resume()
+	{
+		paused = false;
+	}
+
+	/**
+	 * Get the number of ticks simulated so far
+	 * @return the number of ticks
+	 */
+	public long getTickCount()
+	{
+		return tickCount;
+	}
+
+	/**
+	 * Compute a checksum of the state of the sprites, used to check that a
+	 * replayed game ends exactly like the recorded one
+	 * @return the checksum
+	 */
+	public long checksum()
+	{
+		long hash = tickCount;
+		for (int i = 0; i < spritesList.size(); i++)
+		{
+			AnimatedSprite spr = spritesList.get(i);
+			hash = hash * 31 + spr.getSpriteType();
+			hash = hash * 31 + spr.getState();
+			hash = hash * 31 + (spr.alive() ? 1 : 0);
+			hash = hash * 31 + Double.doubleToLongBits(spr.getPosition().X());
+			hash = hash * 31 + Double.doubleToLongBits(spr.getPosition().Y());
+			hash = hash * 31 + Double.doubleToLongBits(spr.getVelocity().X());
+			hash = hash * 31 + Double.doubleToLongBits(spr.getVelocity().Y());
+			hash = hash * 31 + Double.doubleToLongBits(spr.getFaceAngle());
+			hash = hash * 31 + spr.getCurrentFrame();
+		}
+		return hash;
+	}
+
+	/**
+	 * Set the number of ticks simulated so far, when a saved world is restored
+	 * @param ticks the number of ticks
+	 */
+	void setTickCount(long ticks)
+	{
+		tickCount = ticks;
+	}
+
+	/**
+	 * Advance the world of a single step
+	 */
+	public void tick()
+	{
+		if (!paused)
+		{
+			updateSprites();
+			testCollisions();
+		}
+		applySpriteCommands();
+		timedUpdate();
+		tickCount++;
+	}
+
+	/**
+	 * Get sprites of the world
+	 * @return the store of the sprites, usable as a list
+	 */
+	public EntityStore<AnimatedSprite> getSprites()
+	{
+		return spritesList;
+	}
+
+	/**
+	 * Get the number of sprites of the world, including the ones spawned
+	 * but not yet added to the list
+	 * @return the number of sprites
+	 */
+	public int getSpriteCount()
+	{
+		return spritesList.size() + spriteCommands.pendingSpawns();
+	}
+
+	/**
+	 * Add a sprite to the world at the end of the current tick, where it's
+	 * placed now
+	 * @param sprite the sprite to add
+	 */
+	public void spawnSprite(AnimatedSprite sprite)
+	{
+		sprite.resetPreviousPosition();
+		commands().spawn(sprite);
+	}
+
+	/**
+	 * Kill a sprite, it will be removed from the world at the end of the current tick
+	 * @param sprite the sprite to kill
+	 */
+	public void killSprite(AnimatedSprite sprite)
+	{
+		sprite.setAlive(false);
+		commands().kill(sprite);
+	}
+
+	/**
+	 * Get the buffer the commands of the current thread are queued to: the
+	 * buffer of the task during a parallel update, the one of the world otherwise
+	 * @return the command buffer
+	 */
+	private SpriteCommandBuffer<AnimatedSprite> commands()
+	{
+		if (updatingInParallel)
+		{
+			SpriteCommandBuffer<AnimatedSprite> commands = workerCommands.get();
+			if (commands != null)
+			{
+				return commands;
+			}
+		}
+		return spriteCommands;
+	}
+
+	/**
+	 * Remove every sprite from the world, discarding the pending spawns.
+	 * The sprites of the world and the discarded ones go back to their pools
+	 */
+	public void clearSprites()
+	{
+		ArrayList<AnimatedSprite> discarded = spriteCommands.clear();
+		for (int i = 0; i < discarded.size(); i++)
+		{
+			releaseSprite(discarded.get(i));
+		}
+		for (int i = 0; i < spritesList.size(); i++)
+		{
+			releaseSprite(spritesList.get(i));
+		}
+		spritesList.clear();
+	}
+
+	/**
+	 * Give a sprite removed from the world back to its pool, if any
+	 * @param sprite the removed sprite
+	 */
+	private void releaseSprite(AnimatedSprite sprite)
+	{
+		if (sprite.getPool() != null)
+		{
+			sprite.getPool().release(sprite);
+		}
+	}
+
+	/**
+	 * Return true if collisions are tested against every sprite, false if the
+	 * spatial hash broadphase is used
+	 * @return if the brute force collision test is in use
+	 */
+	public boolean isBruteForceCollisions()
+	{
+		return bruteForceCollisions;
+	}
+
+	/**
+	 * Choose between the brute force collision test and the spatial hash broadphase
+	 * @param bruteForce true to test every pair of sprites
+	 */
+	public void setBruteForceCollisions(boolean bruteForce)
+	{
+		bruteForceCollisions = bruteForce;
+	}
+
+	/**
+	 * Declare which sprites are tested for collisions: the sprites of a type
+	 * belong to some layers, and collide with the sprites belonging to the
+	 * layers of their mask. spriteCollision(spr1, spr2) is called only if
+	 * the mask of spr1 has a layer of spr2. Once a type is registered, the
+	 * types not registered don't collide at all; before, every pair is tested
+	 * @param type the type of the sprites
+	 * @param layers the layers the sprites belong to, as bits
+	 * @param mask the layers the sprites collide with, as bits
+	 */
+	public void setCollisionFilter(int type, int layers, int mask)
+	{
+		if (type >= collisionLayers.length)
+		{
+			collisionLayers = Arrays.copyOf(collisionLayers, type + 1);
+			collisionMasks = Arrays.copyOf(collisionMasks, type + 1);
+		}
+		collisionLayers[type] = layers;
+		collisionMasks[type] = mask;
+		filteringCollisions = true;
+	}
+
+	/**
+	 * Return true if the sprites of a type are tested for collisions with
+	 * the sprites of another type
+	 * @param type1 the type of the first sprite, the one spriteCollision() is called for
+	 * @param type2 the type of the second sprite
+	 * @return if the sprites can collide
+	 */
+	public boolean canCollide(int type1, int type2)
+	{
+		return (getCollisionMask(type1) & getCollisionLayers(type2)) != 0;
+	}
+
+	private int getCollisionLayers(int type)
+	{
+		if (!filteringCollisions)
+		{
+			return -1;
+		}
+		return type >= 0 && type < collisionLayers.length ? collisionLayers[type] : 0;
+	}
+
+	private int getCollisionMask(int type)
+	{
+		if (!filteringCollisions)
+		{
+			return -1;
+		}
+		return type >= 0 && type < collisionMasks.length ? collisionMasks[type] : 0;
+	}
+
+	/**
+	 * Set the area the sprites warp around: a sprite leaving it from a side
+	 * comes back from the opposite one
+	 * @param width the width of the area
+	 * @param height the height of the area
+	 */
+	public void setWarpArea(int width, int height)
+	{
+		warpWidth = width;
+		warpHeight = height;
+	}
+
+	/**
+	 * Choose whether the sprites of a type warp around the area
+	 * @param type the type of the sprites
+	 * @param warp true if the sprites warp
+	 */
+	public void setWarping(int type, boolean warp)
+	{
+		if (type >= warpingTypes.length)
+		{
+			warpingTypes = Arrays.copyOf(warpingTypes, type + 1);
+		}
+		warpingTypes[type] = warp;
+	}
+
+	/**
+	 * Return true if the sprites of a type warp around the area
+	 * @param type the type of the sprites
+	 * @return if the sprites warp
+	 */
+	public boolean isWarping(int type)
+	{
+		return type >= 0 && type < warpingTypes.length && warpingTypes[type];
+	}
+
+	/**
+	 * Get the kernel moving the sprites
+	 * @return the kernel
+	 */
+	public SpriteKernel getKernel()
+	{
+		return kernel;
+	}
+
+	/**
+	 * Set the kernel moving the sprites. Every kernel gives the same results
+	 * @param kernel the kernel
+	 */
+	public void setKernel(SpriteKernel kernel)
+	{
+		this.kernel = kernel;
+	}
+
+	/**
+	 * Update the sprites in parallel when they are many. The sprites are
+	 * split in ranges of rows updated by the tasks of a fork/join pool, each
+	 * one queueing the sprites it spawns and kills to its own buffer; the
+	 * buffers are merged in the order of the rows, so the world changes
+	 * exactly like in a sequential update. While updating in parallel,
+	 * spriteUpdate() and spriteDying() must change only the sprite they are
+	 * given, spawning and killing sprites through the world
+	 * @param pool the pool updating the sprites, null to always update them sequentially
+	 * @param threshold the smallest number of sprites updated in parallel
+	 */
+	public void setParallelUpdate(ForkJoinPool pool, int threshold)
+	{
+		updatePool = pool;
+		parallelThreshold = threshold;
+	}
+
+	/**
+	 * Return true if the sprites are updated in parallel when they are many
+	 * @return if the parallel update is enabled
+	 */
+	public boolean isParallelUpdate()
+	{
+		return updatePool != null;
+	}
+
+	/**
+	 * Move, rotate and warp the alive sprites, the first step of updateSprites()
+	 */
+	public void moveSprites()
+	{
+		kernel.move(spritesList.getData(), spritesList.size(), warpWidth, warpHeight, warpingTypes);
+	}
+
+	/**
+	 * Update sprites position, rotation, animation, life and death animation.
+	 * The bounds of the sprites are updated too, ready for the collision test.
+	 * Position, rotation, warp and life are updated by loops over the data
+	 * of the sprites, the rest sprite by sprite, in parallel if enabled and
+	 * the sprites are many, see setParallelUpdate()
+	 */
+	public void updateSprites()
+	{
+		int count = spritesList.size();
+		moveSprites();
+
+		if (updated.length < count)
+		{
+			updated = new int[count * 2];
+		}
+		if (updatePool != null && count >= parallelThreshold && count > ROWS_PER_TASK)
+		{
+			updateInParallel(count);
+			return;
+		}
+		int active = updateRows(0, count);
+		spritesList.getData().age(0, count);
+		killDying(0, active);
+	}
+
+	/**
+	 * Update the sprites of a range of rows, after they have been moved
+	 * @param from the first row
+	 * @param to the row after the last one
+	 * @return the number of updated sprites, whose rows are saved in updated from position from
+	 */
+	private int updateRows(int from, int to)
+	{
+		int active = from;
+		for (int i = spritesList.nextAlive(from); i >= 0 && i < to; i = spritesList.nextAlive(i + 1))
+		{
+			AnimatedSprite spr = spritesList.get(i);
+			spr.updateAnimation();
+			spriteUpdate(spr);
+			spr.updateFrame();
+			spr.transform();
+			updated[active++] = i;
+		}
+		return active - from;
+	}
+
+	/**
+	 * Kill the updated sprites that died during the tick
+	 * @param from the position in updated of the first sprite
+	 * @param count the number of sprites
+	 */
+	private void killDying(int from, int count)
+	{
+		SpriteData data = spritesList.getData();
+		for (int n = from; n < from + count; n++)
+		{
+			if (!data.alive[updated[n]])
+			{
+				AnimatedSprite spr = spritesList.get(updated[n]);
+				spriteDying(spr);
+				commands().kill(spr);
+			}
+		}
+	}
+
+	/**
+	 * Update the sprites with the tasks of the pool, first calling
+	 * spriteUpdate() then spriteDying(), merging the commands of the tasks
+	 * after each step like a sequential update would have queued them
+	 * @param count the number of sprites
+	 */
+	private void updateInParallel(int count)
+	{
+		int tasks = (count + ROWS_PER_TASK - 1) / ROWS_PER_TASK;
+		if (updatedCounts.length < tasks)
+		{
+			updatedCounts = new int[tasks * 2];
+		}
+		while (taskCommands.size() < tasks)
+		{
+			taskCommands.add(new SpriteCommandBuffer<AnimatedSprite>());
+		}
+
+		updatingInParallel = true;
+		try
+		{
+			updatePool.invoke(new UpdateTask(0, tasks, count, false));
+			mergeCommands(tasks);
+			updatePool.invoke(new UpdateTask(0, tasks, count, true));
+			mergeCommands(tasks);
+		}
+		finally
+		{
+			updatingInParallel = false;
+		}
+	}
+
+	private void mergeCommands(int tasks)
+	{
+		for (int n = 0; n < tasks; n++)
+		{
+			taskCommands.get(n).drainTo(spriteCommands);
+		}
+	}
+
+	/**
+	 * Updates the sprites of a range of tasks, splitting it until a single
+	 * task, ROWS_PER_TASK rows, is left
+	 */
+	private class UpdateTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = -2467530716129425532L;
+
+		private int from;
+		private int to;
+		private int count;
+		private boolean dying;
+
+		UpdateTask(int from, int to, int count, boolean dying)
+		{
+			this.from = from;
+			this.to = to;
+			this.count = count;
+			this.dying = dying;
+		}
+
+		protected void compute()
+		{
+			if (to - from > 1)
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new UpdateTask(from, middle, count, dying), new UpdateTask(middle, to, count, dying));
+				return;
+			}
+
+			int first = from * ROWS_PER_TASK;
+			int last = Math.min(count, first + ROWS_PER_TASK);
+			workerCommands.set(taskCommands.get(from));
+			try
+			{
+				if (dying)
+				{
+					spritesList.getData().age(first, last);
+					killDying(first, updatedCounts[from]);
+				}
+				else
+				{
+					updatedCounts[from] = updateRows(first, last);
+				}
+			}
+			finally
+			{
+				workerCommands.set(null);
+			}
+		}
+	}
+
+	/**
+	 * Test collisions between sprites. Only the sprites belonging to some
+	 * layer are put in the broadphase, and only the ones with a mask query
+	 * it, see setCollisionFilter()
+	 */
+	public void testCollisions()
+	{
+		if (bruteForceCollisions)
+		{
+			testAllCollisions();
+			return;
+		}
+
+		int count = spritesList.size();
+		if (collisionCandidates.length < count)
+		{
+			collisionCandidates = new int[count * 2];
+		}
+
+		/* Build the grid with the sprites alive at the beginning of the test.
+		 * Collisions only kill sprites and spawn new ones, so the bounds
+		 * don't change until the end of the test */
+		broadphase.clear();
+		for (int i = 0; i < count; i++)
+		{
+			AnimatedSprite spr = spritesList.get(i);
+			if (spr.alive() && getCollisionLayers(spr.getSpriteType()) != 0)
+			{
+				broadphase.insert(i, spr.getBoundsX(), spr.getBoundsY(), spr.getBoundsWidth(), spr.getBoundsHeight());
+			}
+		}
+
+		for (int first = 0; first < count; first++)
+		{
+			AnimatedSprite spr1 = spritesList.get(first);
+			int mask = getCollisionMask(spr1.getSpriteType());
+			if (spr1.alive() && mask != 0)
+			{
+				int found = broadphase.query(spr1.getBoundsX(), spr1.getBoundsY(), spr1.getBoundsWidth(),
+						spr1.getBoundsHeight(), collisionCandidates);
+				for (int n = 0; n < found; n++)
+				{
+					int second = collisionCandidates[n];
+					if (first != second)
+					{
+						AnimatedSprite spr2 = spritesList.get(second);
+						if (spr2.alive() && (mask & getCollisionLayers(spr2.getSpriteType())) != 0)
+						{
+							if (spr2.collidesWith(spr1))
+							{
+								spriteCollision(spr1, spr2);
+								break;
+							}
+							else
+								spr1.setCollided(false);
+
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test collisions between every pair of sprites
+	 */
+	private void testAllCollisions()
+	{
+		for (int first=0; first < spritesList.size(); first++)
+		{
+			AnimatedSprite spr1 = spritesList.get(first);
+			int mask = getCollisionMask(spr1.getSpriteType());
+			if (spr1.alive() && mask != 0)
+			{
+				for (int second = 0; second < spritesList.size(); second++)
+				{
+					if (first != second)
+					{
+						AnimatedSprite spr2 = spritesList.get(second);
+						if (spr2.alive() && (mask & getCollisionLayers(spr2.getSpriteType())) != 0)
+						{
+							if (spr2.collidesWith(spr1))
+							{
+								spriteCollision(spr1, spr2);
+								break;
+							}
+							else
+								spr1.setCollided(false);
+
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the sprites spawned and removes the sprites killed during the tick
+	 */
+	public void applySpriteCommands()
+	{
+		ArrayList<AnimatedSprite> removed = spriteCommands.apply(spritesList);
+		for (int i = 0; i < removed.size(); i++)
+		{
+			releaseSprite(removed.get(i));
+		}
+	}
+}
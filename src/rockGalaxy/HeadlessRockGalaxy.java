@@ -0,0 +1,373 @@
+package rockGalaxy;
+/**
+ * The game without applet, display and sounds. The rules are the same of
+ * the applet, but ticks are simulated as fast as possible, which is useful
+ * for soak tests and load benchmarks on machines without a display
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.awt.event.KeyEvent;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+public class HeadlessRockGalaxy extends GameWorld
+{
+	private RockGalaxyRules rules;
+	private InputRecorder inputRecorder;
+
+	/**
+	 * Constructor, loads the images of the sprites
+	 * @param width the width of the screen
+	 * @param height the height of the screen
+	 */
+	public HeadlessRockGalaxy(int width, int height)
+	{
+		rules = new RockGalaxyRules(this, width, height);
+		rules.load(null, null);
+	}
+
+	/**
+	 * Constructor
+	 * @param width the width of the screen
+	 * @param height the height of the screen
+	 * @param images the images of the sprites, already loaded
+	 * @param seed the seed of the random generator of the game
+	 */
+	public HeadlessRockGalaxy(int width, int height, RockGalaxyImages images, long seed)
+	{
+		rules = new RockGalaxyRules(this, width, height, seed);
+		rules.start(images, null, null);
+	}
+
+	/**
+	 * Get the rules of the game
+	 * @return the gameplay of the game
+	 */
+	public RockGalaxyRules getRules()
+	{
+		return rules;
+	}
+
+	/**
+	 * Record the keys pressed and released from now on
+	 * @param recorder the recorder of the input, null to stop recording
+	 */
+	public void setInputRecorder(InputRecorder recorder)
+	{
+		inputRecorder = recorder;
+	}
+
+	/**
+	 * Close the input log, saving the checksum of the world
+	 * @throws IOException if the log can't be written
+	 */
+	public void stopRecording() throws IOException
+	{
+		if (inputRecorder != null)
+		{
+			inputRecorder.close(getTickCount(), checksum());
+			inputRecorder = null;
+		}
+	}
+
+	/**
+	 * Save the game to a file, see GameSave
+	 * @param file the name of the file
+	 * @throws IOException if the file can't be written
+	 */
+	public void save(String file) throws IOException
+	{
+		GameSave.save(rules, Paths.get(file));
+	}
+
+	/**
+	 * Restore a game saved to a file
+	 * @param file the name of the file
+	 * @throws IOException if the file can't be read or isn't a saved game
+	 */
+	public void load(String file) throws IOException
+	{
+		GameSave.load(rules, Paths.get(file));
+	}
+
+	/**
+	 * Restore one of the last snapshots of a ring file, written by the game
+	 * with the -ring option
+	 * @param file the name of the ring file
+	 * @param age 0 for the newest snapshot, 1 for the one before and so on
+	 * @return the sequence number of the restored snapshot
+	 * @throws IOException if the file isn't a ring or has no such snapshot
+	 */
+	public long loadRing(String file, int age) throws IOException
+	{
+		GameSaveRing ring = GameSaveRing.open(Paths.get(file));
+		try
+		{
+			if (!ring.restore(age, rules))
+			{
+				throw new IOException("No snapshot " + age + " in " + file + ", " + ring.getSequence()
+						+ " snapshots written to " + ring.getSlotCount() + " slots");
+			}
+			return ring.getSequence() - age;
+		}
+		finally
+		{
+			ring.close();
+		}
+	}
+
+	/**
+	 * Press a key
+	 * @param keyCode the code of the key, see KeyEvent
+	 */
+	public void keyDown(int keyCode)
+	{
+		record(Game.KEY_DOWN, keyCode);
+		rules.keyDown(keyCode);
+	}
+
+	/**
+	 * Release a key
+	 * @param keyCode the code of the key, see KeyEvent
+	 */
+	public void keyUp(int keyCode)
+	{
+		record(Game.KEY_UP, keyCode);
+		rules.keyUp(keyCode);
+	}
+
+	private void record(int type, int keyCode)
+	{
+		if (inputRecorder != null)
+		{
+			try
+			{
+				inputRecorder.record(getTickCount(), type, keyCode, 0, 0);
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+				inputRecorder = null;
+			}
+		}
+	}
+
+	/**
+	 * Replay a recorded game as fast as possible. The game must have been
+	 * created with the seed of the log and must not have been played yet.
+	 * Mouse events are skipped, the rules don't use the mouse
+	 * @param player the input log of the recorded game
+	 * @return true if the replayed game ends exactly like the recorded one
+	 * @throws IOException if the log can't be read
+	 */
+	public boolean replay(InputPlayer player) throws IOException
+	{
+		int[] event = new int[4];
+		while (!player.isOver() || getTickCount() < player.getTicks())
+		{
+			while (player.next(getTickCount(), event))
+			{
+				if (event[0] == Game.KEY_DOWN)
+				{
+					keyDown(event[1]);
+				}
+				else if (event[0] == Game.KEY_UP)
+				{
+					keyUp(event[1]);
+				}
+			}
+			tick();
+		}
+		return checksum() == player.getChecksum();
+	}
+
+	/**
+	 * Press and release keys like a simple pilot, that turns and shoots and
+	 * starts a new game when the current one is over. Called before a tick
+	 */
+	public void autopilot()
+	{
+		long tick = getTickCount();
+		if (rules.getGameState() != RockGalaxyRules.GAME_RUNNING)
+		{
+			keyDown(KeyEvent.VK_ENTER);
+		}
+		if (tick % 200 == 0)
+		{
+			keyDown(KeyEvent.VK_LEFT);
+		}
+		else if (tick % 200 == 50)
+		{
+			keyUp(KeyEvent.VK_LEFT);
+		}
+		if (tick % 10 == 0)
+		{
+			keyDown(KeyEvent.VK_CONTROL);
+		}
+		else if (tick % 10 == 5)
+		{
+			keyUp(KeyEvent.VK_CONTROL);
+		}
+	}
+
+	/**
+	 * Simulate some ticks
+	 * @param ticks the number of ticks to simulate
+	 */
+	public void run(long ticks)
+	{
+		for (long n = 0; n < ticks; n++)
+		{
+			tick();
+		}
+	}
+
+	void spriteUpdate(AnimatedSprite sprite)
+	{
+		rules.spriteUpdate(sprite);
+	}
+
+	void spriteDying(AnimatedSprite sprite)
+	{
+		rules.spriteDying(sprite);
+	}
+
+	void spriteCollision(AnimatedSprite spr1, AnimatedSprite spr2)
+	{
+		rules.spriteCollision(spr1, spr2);
+	}
+
+	void timedUpdate()
+	{
+		rules.timedUpdate();
+	}
+
+	/**
+	 * Play a game with a simple pilot that turns and shoots, restarting it
+	 * when it's over, or replay a recorded game, and print how fast ticks
+	 * are simulated. Options: -ticks 100000 (ticks to simulate), -seed 42,
+	 * -record file (input log to write), -replay file (input log to replay),
+	 * -load file (saved game to start from), -save file (saved game to write at the end),
+	 * -ring file (ring of snapshots to start from) -age 0 (snapshot of the ring,
+	 * 0 for the newest); -ticks 0 only prints the restored game
+	 * @param args the options
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		System.setProperty("java.awt.headless", "true");
+		long ticks = 100000;
+		long seed = System.nanoTime();
+		String record = null;
+		String replay = null;
+		String load = null;
+		String save = null;
+		String ring = null;
+		int age = 0;
+		for (int i = 0; i + 1 < args.length; i += 2)
+		{
+			if (args[i].equals("-ticks"))
+			{
+				ticks = Long.parseLong(args[i + 1]);
+			}
+			else if (args[i].equals("-seed"))
+			{
+				seed = Long.parseLong(args[i + 1]);
+			}
+			else if (args[i].equals("-record"))
+			{
+				record = args[i + 1];
+			}
+			else if (args[i].equals("-replay"))
+			{
+				replay = args[i + 1];
+			}
+			else if (args[i].equals("-load"))
+			{
+				load = args[i + 1];
+			}
+			else if (args[i].equals("-save"))
+			{
+				save = args[i + 1];
+			}
+			else if (args[i].equals("-ring"))
+			{
+				ring = args[i + 1];
+			}
+			else if (args[i].equals("-age"))
+			{
+				age = Integer.parseInt(args[i + 1]);
+			}
+			else
+			{
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		RockGalaxyImages images = new RockGalaxyImages();
+		images.load(null);
+		if (replay != null)
+		{
+			InputPlayer player = new InputPlayer(new FileInputStream(replay));
+			HeadlessRockGalaxy game = new HeadlessRockGalaxy(player.getWidth(), player.getHeight(),
+					images, player.getSeed());
+			long start = System.nanoTime();
+			boolean same = game.replay(player);
+			long elapsed = System.nanoTime() - start;
+			player.close();
+			System.out.println(game.getTickCount() + " ticks replayed in " + elapsed / 1000000 + " ms, "
+					+ (long) (game.getTickCount() * 1000000000.0 / elapsed) + " ticks/s");
+			System.out.println("score " + game.getRules().getScore() + ", "
+					+ (same ? "same final state as the recorded game" : "final state DIFFERS from the recorded game"));
+			return;
+		}
+
+		HeadlessRockGalaxy game = new HeadlessRockGalaxy(RockGalaxy.SCREENWIDTH, RockGalaxy.SCREENHEIGHT, images, seed);
+		if (load != null)
+		{
+			game.load(load);
+		}
+		if (ring != null)
+		{
+			long restored = game.loadRing(ring, age);
+			System.out.println("snapshot " + restored + " of " + ring + " restored: tick " + game.getTickCount()
+					+ ", score " + game.getRules().getScore() + ", health " + game.getRules().getHealth()
+					+ ", " + game.getSprites().size() + " sprites, checksum " + game.checksum());
+		}
+		if (record != null)
+		{
+			game.setInputRecorder(new InputRecorder(new FileOutputStream(record), seed,
+					RockGalaxy.FRAMERATE, RockGalaxy.SCREENWIDTH, RockGalaxy.SCREENHEIGHT));
+		}
+		RockGalaxyRules rules = game.getRules();
+		int games = 0;
+		int maxSprites = 0;
+		long start = System.nanoTime();
+		for (long n = 0; n < ticks; n++)
+		{
+			if (rules.getGameState() != RockGalaxyRules.GAME_RUNNING)
+			{
+				games++;
+			}
+			game.autopilot();
+			game.tick();
+			maxSprites = Math.max(maxSprites, game.getSprites().size());
+		}
+		long elapsed = System.nanoTime() - start;
+		game.stopRecording();
+		if (save != null)
+		{
+			game.save(save);
+		}
+
+		System.out.println(ticks + " ticks in " + elapsed / 1000000 + " ms, "
+				+ (long) (ticks * 1000000000.0 / elapsed) + " ticks/s");
+		System.out.println(games + " games, score " + rules.getScore() + ", highscore " + rules.getHighscore()
+				+ ", up to " + maxSprites + " sprites");
+		for (SpritePool pool : rules.getSpritePools())
+		{
+			System.out.println(pool);
+		}
+	}
+}
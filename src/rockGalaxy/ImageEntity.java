@@ -8,20 +8,26 @@ import java.applet.Applet;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Rectangle;
-import java.awt.Toolkit;
 import java.awt.geom.AffineTransform;
-import java.net.URL;
+import java.io.IOException;
 
 public class ImageEntity extends BaseGameEntity
 {
 	protected Image image;
 	protected Applet applet;
 	protected AffineTransform affineTransform;
+	protected boolean transformChanged = false;
 	protected Graphics2D graphics2d;
 
+	/* The bounds of the image, updated when the position or the image change */
+	protected int boundsX;
+	protected int boundsY;
+	protected int boundsWidth;
+	protected int boundsHeight;
+
 	/**
 	 * Constructor
-	 * @param app: the applet
+	 * @param app: the applet, null if the entity is never shown
 	 */
 	ImageEntity(Applet app) {
 		applet = app;
@@ -45,9 +51,18 @@ public class ImageEntity extends BaseGameEntity
 	public void setImage(Image image)
 	{
 		this.image = image;
-		double x = applet.getSize().width/2  - getWidth()/2;
-		double y = applet.getSize().height/2 - getHeight()/2;
-		affineTransform = AffineTransform.getTranslateInstance(x, y);
+		updateSize();
+		double x = getAppletWidth()/2  - getWidth()/2;
+		double y = getAppletHeight()/2 - getHeight()/2;
+		if (affineTransform == null)
+		{
+			affineTransform = AffineTransform.getTranslateInstance(x, y);
+		}
+		else
+		{
+			affineTransform.setToTranslation(x, y);
+		}
+		transformChanged = false;
 	}
 
 	/**
@@ -88,7 +103,7 @@ public class ImageEntity extends BaseGameEntity
 	 */
 	public double getCenterX()
 	{
-		return getX() + getWidth() / 2;
+		return getX() + boundsWidth / 2;
 	}
 
 	/**
@@ -97,7 +112,35 @@ public class ImageEntity extends BaseGameEntity
 	 */
 	public double getCenterY()
 	{
-		return getY() + getHeight() / 2;
+		return getY() + boundsHeight / 2;
+	}
+
+	public void setX(double x)
+	{
+		this.x = x;
+		boundsX = (int) x;
+	}
+
+	public void incX(double i)
+	{
+		setX(x + i);
+	}
+
+	public void setY(double y)
+	{
+		this.y = y;
+		boundsY = (int) y;
+	}
+
+	public void incY(double i)
+	{
+		setY(y + i);
+	}
+
+	private void updateSize()
+	{
+		boundsWidth = getWidth();
+		boundsHeight = getHeight();
 	}
 
 	/**
@@ -119,46 +162,42 @@ public class ImageEntity extends BaseGameEntity
 	}
 
 	/**
-	 * Get the path to the image
-	 * @param filename: the name of the image to search
-	 * @return the absolute path of the image
+	 * Load the image, decoding it in the calling thread. To load many
+	 * images in parallel use an AssetLoader
+	 * @param filename: the name of the image to load
+	 * @throws IllegalStateException if the image can't be loaded
 	 */
-	private URL getURL(String filename)
+	public void load(String filename)
 	{
-		URL url = null;
-		try {
-			url = this.getClass().getResource(filename);
+		try
+		{
+			setImage(AssetLoader.readImage(filename));
 		}
-		catch (Exception e)
+		catch (IOException e)
 		{
-
+			throw new IllegalStateException("Can't load " + filename, e);
 		}
-		return url;
 	}
 
-	/**
-	 * Load the image
-	 * @param filename: the name of the image to load
-	 */
-	public void load(String filename)
+	private int getAppletWidth()
 	{
-		Toolkit toolkit = Toolkit.getDefaultToolkit();
-		image = toolkit.getImage(getURL(filename));
-		while (getImage().getWidth(applet) <= 0);
-		double x = applet.getSize().width/2  - getWidth()/2;
-		double y = applet.getSize().height/2 - getHeight()/2;
-		affineTransform = AffineTransform.getTranslateInstance(x, y);
+		return applet != null ? applet.getWidth() : 0;
+	}
+
+	private int getAppletHeight()
+	{
+		return applet != null ? applet.getHeight() : 0;
 	}
 
 	/**
-	 * Change the affine transform associated with the image
+	 * Change the affine transform associated with the image. The transform
+	 * is computed the next time it's needed, from the position and the
+	 * facing of the entity at that time, so entities that are only simulated
+	 * never compute it
 	 */
 	public void transform()
 	{
-		affineTransform.setToIdentity();
-		affineTransform.translate((int)getX() + getWidth()/2, (int)getY() + getHeight()/2);
-		affineTransform.rotate(Math.toRadians(getFaceAngle()));
-		affineTransform.translate(-getWidth()/2, -getHeight()/2);
+		transformChanged = true;
 	}
 	
 	/**
@@ -167,6 +206,14 @@ public class ImageEntity extends BaseGameEntity
 	 */
 	public AffineTransform getAffineTransform()
 	{
+		if (transformChanged)
+		{
+			transformChanged = false;
+			affineTransform.setToIdentity();
+			affineTransform.translate((int)getX() + getWidth()/2, (int)getY() + getHeight()/2);
+			affineTransform.rotate(Math.toRadians(getFaceAngle()));
+			affineTransform.translate(-getWidth()/2, -getHeight()/2);
+		}
 		return affineTransform;
 	}
 
@@ -175,7 +222,7 @@ public class ImageEntity extends BaseGameEntity
 	 */
 	public void draw()
 	{
-		graphics2d.drawImage(getImage(), affineTransform, applet);
+		graphics2d.drawImage(getImage(), getAffineTransform(), applet);
 	}
 
 	/**
@@ -184,9 +231,104 @@ public class ImageEntity extends BaseGameEntity
 	 */
 	public Rectangle getBounds()
 	{
-		Rectangle r;
-		r = new Rectangle((int)getX(), (int)getY(), getWidth(), getHeight());
+		return new Rectangle(boundsX, boundsY, boundsWidth, boundsHeight);
+	}
+
+	/**
+	 * Store the bounds of the image in a rectangle, without creating one
+	 * @param r the rectangle to set
+	 * @return the rectangle
+	 */
+	public Rectangle getBounds(Rectangle r)
+	{
+		r.setBounds(boundsX, boundsY, boundsWidth, boundsHeight);
 		return r;
 	}
 
+	/**
+	 * Get the left side of the bounds of the image
+	 * @return the abscissa of the bounds
+	 */
+	public int getBoundsX()
+	{
+		return boundsX;
+	}
+
+	/**
+	 * Get the top side of the bounds of the image
+	 * @return the ordinate of the bounds
+	 */
+	public int getBoundsY()
+	{
+		return boundsY;
+	}
+
+	/**
+	 * Get the width of the bounds of the image
+	 * @return the width of the bounds
+	 */
+	public int getBoundsWidth()
+	{
+		return boundsWidth;
+	}
+
+	/**
+	 * Get the height of the bounds of the image
+	 * @return the height of the bounds
+	 */
+	public int getBoundsHeight()
+	{
+		return boundsHeight;
+	}
+
+	/**
+	 * Return true if the bounds of the image intersect a rectangle, like
+	 * Rectangle.intersects() does
+	 * @param rx the abscissa of the rectangle
+	 * @param ry the ordinate of the rectangle
+	 * @param rw the width of the rectangle
+	 * @param rh the height of the rectangle
+	 * @return if the bounds intersect the rectangle
+	 */
+	public boolean intersects(int rx, int ry, int rw, int rh)
+	{
+		int tw = boundsWidth;
+		int th = boundsHeight;
+		if (rw <= 0 || rh <= 0 || tw <= 0 || th <= 0)
+		{
+			return false;
+		}
+		int tx = boundsX;
+		int ty = boundsY;
+		rw += rx;
+		rh += ry;
+		tw += tx;
+		th += ty;
+		/* Overflow or intersection */
+		return ((rw < rx || rw > tx) && (rh < ry || rh > ty) && (tw < tx || tw > rx) && (th < ty || th > ry));
+	}
+
+	/**
+	 * Return true if the bounds of two images intersect
+	 * @param entity the other image
+	 * @return if the bounds intersect
+	 */
+	public boolean intersects(ImageEntity entity)
+	{
+		return intersects(entity.boundsX, entity.boundsY, entity.boundsWidth, entity.boundsHeight);
+	}
+
+	/**
+	 * Return true if the bounds of the image contain a point, like
+	 * Rectangle.contains(double, double) does
+	 * @param px the abscissa of the point
+	 * @param py the ordinate of the point
+	 * @return if the point is inside the bounds
+	 */
+	public boolean contains(double px, double py)
+	{
+		return px >= boundsX && py >= boundsY && px < boundsX + (double) boundsWidth
+				&& py < boundsY + (double) boundsHeight;
+	}
+
 }
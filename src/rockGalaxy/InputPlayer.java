@@ -0,0 +1,182 @@
+package rockGalaxy;
+/**
+ * Reads an input log written by InputRecorder, giving back the events
+ * tick by tick
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+class InputPlayer
+{
+	private DataInputStream in;
+	private long seed;
+	private int tickRate;
+	private int width;
+	private int height;
+
+	/* The next event, or the end of the log */
+	private long nextTick = 0;
+	private int nextType;
+	private int nextCode;
+	private int nextX;
+	private int nextY;
+	private long checksum = 0;
+
+	/**
+	 * Constructor, reads the header and the first event of the log
+	 * @param stream the stream to read from, closed with the player
+	 * @throws IOException if the log can't be read or isn't an input log
+	 */
+	InputPlayer(InputStream stream) throws IOException
+	{
+		in = new DataInputStream(new BufferedInputStream(stream));
+		if (in.readInt() != InputRecorder.MAGIC)
+		{
+			throw new IOException("Not an input log");
+		}
+		int version = in.readUnsignedByte();
+		if (version != InputRecorder.VERSION)
+		{
+			throw new IOException("Unsupported input log version " + version);
+		}
+		seed = in.readLong();
+		tickRate = in.readInt();
+		width = in.readInt();
+		height = in.readInt();
+		readEvent();
+	}
+
+	/**
+	 * Get the seed of the random generator of the recorded game
+	 * @return the seed
+	 */
+	public long getSeed()
+	{
+		return seed;
+	}
+
+	/**
+	 * Get the number of ticks per second of the recorded game
+	 * @return the tick rate
+	 */
+	public int getTickRate()
+	{
+		return tickRate;
+	}
+
+	/**
+	 * Get the width of the screen of the recorded game
+	 * @return the width of the screen
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/**
+	 * Get the height of the screen of the recorded game
+	 * @return the height of the screen
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * Return true if every event has been read
+	 * @return if the log is over
+	 */
+	public boolean isOver()
+	{
+		return nextType == InputRecorder.END;
+	}
+
+	/**
+	 * Get the number of ticks of the recorded game, known once the log is over
+	 * @return the number of ticks
+	 */
+	public long getTicks()
+	{
+		return nextTick;
+	}
+
+	/**
+	 * Get the checksum of the world at the end of the recorded game,
+	 * known once the log is over
+	 * @return the checksum
+	 */
+	public long getChecksum()
+	{
+		return checksum;
+	}
+
+	/**
+	 * Get the next event of a tick
+	 * @param tick the tick being simulated
+	 * @param event filled with the type, the code and the mouse position of the event
+	 * @return false if there are no more events for the tick
+	 * @throws IOException if the log can't be read
+	 */
+	public boolean next(long tick, int[] event) throws IOException
+	{
+		if (isOver() || nextTick != tick)
+		{
+			return false;
+		}
+		event[0] = nextType;
+		event[1] = nextCode;
+		event[2] = nextX;
+		event[3] = nextY;
+		readEvent();
+		return true;
+	}
+
+	/**
+	 * Close the log
+	 * @throws IOException if the log can't be closed
+	 */
+	public void close() throws IOException
+	{
+		in.close();
+	}
+
+	private void readEvent() throws IOException
+	{
+		nextTick += readVarLong();
+		nextType = in.readUnsignedByte();
+		if (nextType == InputRecorder.END)
+		{
+			checksum = in.readLong();
+			return;
+		}
+		nextCode = (int) readVarLong();
+		nextX = 0;
+		nextY = 0;
+		if (nextType != Game.KEY_DOWN && nextType != Game.KEY_UP)
+		{
+			int x = (int) readVarLong();
+			int y = (int) readVarLong();
+			nextX = (x >>> 1) ^ -(x & 1);
+			nextY = (y >>> 1) ^ -(y & 1);
+		}
+	}
+
+	private long readVarLong() throws IOException
+	{
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+}
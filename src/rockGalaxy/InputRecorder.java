@@ -0,0 +1,104 @@
+package rockGalaxy;
+/**
+ * Writes the input of a game to a compact binary log, so that the game
+ * can be replayed exactly by InputPlayer.
+ * The log starts with a header: the magic number, the version, the seed of
+ * the game, the tick rate and the screen size. Every event follows as the
+ * number of ticks since the previous event (varint), the type (byte), the
+ * key code or mouse button (varint) and, for mouse events, the mouse
+ * position (zigzag varints). The log ends with the ticks since the last
+ * event, the END type and a checksum of the final state of the world
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+class InputRecorder
+{
+	static final int MAGIC = 0x5247494C; // "RGIL"
+	static final int VERSION = 1;
+	static final int END = 0xFF;
+
+	private DataOutputStream out;
+	private long lastTick = 0;
+	private long events = 0;
+
+	/**
+	 * Constructor, writes the header of the log
+	 * @param stream the stream to write to, closed with the recorder
+	 * @param seed the seed of the random generator of the game
+	 * @param tickRate the number of ticks per second
+	 * @param width the width of the screen
+	 * @param height the height of the screen
+	 * @throws IOException if the header can't be written
+	 */
+	InputRecorder(OutputStream stream, long seed, int tickRate, int width, int height) throws IOException
+	{
+		out = new DataOutputStream(new BufferedOutputStream(stream));
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeLong(seed);
+		out.writeInt(tickRate);
+		out.writeInt(width);
+		out.writeInt(height);
+	}
+
+	/**
+	 * Record an input event
+	 * @param tick the tick the event is handled at
+	 * @param type the type of the event, see Game
+	 * @param code the key code or the mouse button
+	 * @param x the abscissa of the mouse
+	 * @param y the ordinate of the mouse
+	 * @throws IOException if the event can't be written
+	 */
+	public void record(long tick, int type, int code, int x, int y) throws IOException
+	{
+		writeVarLong(tick - lastTick);
+		lastTick = tick;
+		out.writeByte(type);
+		writeVarLong(code);
+		if (type != Game.KEY_DOWN && type != Game.KEY_UP)
+		{
+			writeVarLong(((x << 1) ^ (x >> 31)) & 0xFFFFFFFFL);
+			writeVarLong(((y << 1) ^ (y >> 31)) & 0xFFFFFFFFL);
+		}
+		events++;
+	}
+
+	/**
+	 * Get the number of recorded events
+	 * @return the number of events
+	 */
+	public long getEvents()
+	{
+		return events;
+	}
+
+	/**
+	 * End the log and close it
+	 * @param ticks the number of ticks of the game
+	 * @param checksum the checksum of the world after the last tick
+	 * @throws IOException if the log can't be written
+	 */
+	public void close(long ticks, long checksum) throws IOException
+	{
+		writeVarLong(ticks - lastTick);
+		out.writeByte(END);
+		out.writeLong(checksum);
+		out.close();
+	}
+
+	private void writeVarLong(long value) throws IOException
+	{
+		while ((value & ~0x7FL) != 0)
+		{
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+}
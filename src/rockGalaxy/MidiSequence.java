@@ -56,7 +56,15 @@ public class MidiSequence extends Sound
         try
         {
             setFilename(file);
-            song = MidiSystem.getSequence(getURL(getFilename()));
+            AssetArchive archive = AssetLoader.getArchive();
+            if (archive != null && archive.contains(file))
+            {
+                song = MidiSystem.getSequence(archive.readRaw(file));
+            }
+            else
+            {
+                song = MidiSystem.getSequence(getURL(getFilename()));
+            }
             sequencer.setSequence(song);
             sequencer.open();
             return true;
@@ -1,6 +1,8 @@
 package rockGalaxy;
 /**
- * A representation of a two dimensional point
+ * A representation of a two dimensional point, or vector. The primitive
+ * setters and the in-place operations don't allocate, so they can be used
+ * on every tick; the generic ones box their arguments
  * @author Ing. Fabio Brea
  * @version 1.1
  */
@@ -9,6 +11,17 @@ class Point2D extends Object
     private double x;
     private double y;
 
+    /**
+     * Create a point in 2D
+     * @param x: the abscissa of the point
+     * @param y: the ordinate of the point
+     */
+    public Point2D(double x, double y)
+    {
+        this.x = x;
+        this.y = y;
+    }
+
     /**
      * Create a point in 2D
      * @param x: the abscissa of the point
@@ -20,6 +33,15 @@ class Point2D extends Object
         setY(y);
     }
 
+    /**
+     * Set the abscissa of the point
+     * @param x: the abscissa of the point
+     */
+    public void setX(double x)
+    {
+    	this.x = x;
+    }
+
     /**
      * Set the abscissa of the point
      * @param x: the abscissa of the point
@@ -28,18 +50,27 @@ class Point2D extends Object
     {
     	if (x instanceof Integer)
     	{
-        	this.x = ((Integer) x).doubleValue();
+        	setX(((Integer) x).doubleValue());
     	}
     	else if (x instanceof Float)
     	{
-    		this.x = ((Float) x).doubleValue();
+    		setX(((Float) x).doubleValue());
     	}
     	else if (x instanceof Double)
     	{
-    		this.x = ((Double) x).doubleValue();
+    		setX(((Double) x).doubleValue());
     	}
     }
     
+    /**
+     * Set the ordinate of the point
+     * @param y: the ordinate of the point
+     */
+    public void setY(double y)
+    {
+    	this.y = y;
+    }
+
     /**
      * Set the ordinate of the point
      * @param y: the ordinate of the point
@@ -48,15 +79,15 @@ class Point2D extends Object
     {
     	if (y instanceof Integer)
     	{
-        	this.y = ((Integer) y).doubleValue();
+        	setY(((Integer) y).doubleValue());
     	}
     	else if (y instanceof Float)
     	{
-    		this.y = ((Float) y).doubleValue();
+    		setY(((Float) y).doubleValue());
     	}
     	else if (y instanceof Double)
     	{
-    		this.y = ((Double) y).doubleValue();
+    		setY(((Double) y).doubleValue());
     	}
     }
 
@@ -77,6 +108,56 @@ class Point2D extends Object
     {
     	return y;
     }
+
+    /**
+     * Set both coordinates of the point
+     * @param x: the abscissa of the point
+     * @param y: the ordinate of the point
+     */
+    public void set(double x, double y)
+    {
+    	this.x = x;
+    	this.y = y;
+    }
+
+    /**
+     * Copy the coordinates of another point
+     * @param point: the point to copy
+     */
+    public void set(Point2D point)
+    {
+    	set(point.X(), point.Y());
+    }
+
+    /**
+     * Move the point
+     * @param dx: the offset of the abscissa
+     * @param dy: the offset of the ordinate
+     */
+    public void add(double dx, double dy)
+    {
+    	x += dx;
+    	y += dy;
+    }
+
+    /**
+     * Move the point by a vector
+     * @param vector: the offset of the point
+     */
+    public void add(Point2D vector)
+    {
+    	add(vector.X(), vector.Y());
+    }
+
+    /**
+     * Multiply both coordinates
+     * @param factor: the factor to multiply by
+     */
+    public void scale(double factor)
+    {
+    	x *= factor;
+    	y *= factor;
+    }
 }
 
 
@@ -0,0 +1,194 @@
+package rockGalaxy;
+/**
+ * The images of the sprites of the game. They are only read once loaded,
+ * so many games can share them
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.applet.Applet;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.Future;
+
+class RockGalaxyImages
+{
+	ImageEntity bulletImage;
+	ImageEntity[] bigAsteroids = new ImageEntity[5];
+	ImageEntity[] medAsteroids = new ImageEntity[2];
+	ImageEntity[] smlAsteroids = new ImageEntity[3];
+	ImageEntity[] tnyAsteroids = new ImageEntity[4];
+	ImageEntity[] explosions = new ImageEntity[2];
+	ImageEntity[] shipImage = new ImageEntity[3];
+	ImageEntity powerupShield;
+	ImageEntity powerupHealth;
+	ImageEntity powerup250;
+	ImageEntity powerup500;
+	ImageEntity powerup1000;
+	ImageEntity powerupGun;
+
+	/* Resources folders */
+	private String images_folder = "/images/";
+
+	/* Every image, in loading order, so that saved games can refer to them by index */
+	private ArrayList<Image> all = new ArrayList<Image>();
+	private IdentityHashMap<Image, Integer> ids = new IdentityHashMap<Image, Integer>();
+
+	/* Images being loaded, with the entities they are for */
+	private ArrayList<ImageEntity> pendingEntities = new ArrayList<ImageEntity>();
+	private ArrayList<Future<BufferedImage>> pendingImages = new ArrayList<Future<BufferedImage>>();
+
+	/**
+	 * Load the images, decoding them in parallel
+	 * @param applet the applet of the game, null if the game isn't shown
+	 */
+	public void load(Applet applet)
+	{
+		AssetLoader loader = new AssetLoader(AssetLoader.defaultThreads());
+		try
+		{
+			request(loader, applet);
+			finish();
+		}
+		finally
+		{
+			loader.shutdown();
+		}
+	}
+
+	/**
+	 * Start loading the images. They can't be used before finish() is called
+	 * @param loader the loader decoding the images
+	 * @param applet the applet of the game, null if the game isn't shown
+	 */
+	public void request(AssetLoader loader, Applet applet)
+	{
+		/* Load powerups */
+		powerupShield = request(loader, applet, "powerup_shield2.png");
+		powerupHealth = request(loader, applet, "powerup_cola.png");
+		powerup250 = request(loader, applet, "powerup_250.png");
+		powerup500 = request(loader, applet, "powerup_500.png");
+		powerup1000 = request(loader, applet, "powerup_1000.png");
+		powerupGun = request(loader, applet, "powerup_gun.png");
+
+		/* Load ship */
+		shipImage[0] = request(loader, applet, "spaceship.png");
+		shipImage[1] = request(loader, applet, "ship_thrust.png");
+		shipImage[2] = request(loader, applet, "ship_shield.png");
+
+		/* Load bullets */
+		bulletImage = request(loader, applet, "plasmashot.png");
+
+		/* Load explosions */
+		explosions[0] = request(loader, applet, "explosion.png");
+		explosions[1] = request(loader, applet, "explosion2.png");
+
+		/* Load asteroids */
+		for (int n = 0; n < 5; n++)
+		{
+			bigAsteroids[n] = request(loader, applet, "asteroid" + (n + 1) + ".png");
+		}
+
+		for (int n = 0; n < 2; n++)
+		{
+			medAsteroids[n] = request(loader, applet, "medium" + (n + 1) + ".png");
+		}
+
+		for (int n = 0; n < 3; n++)
+		{
+			smlAsteroids[n] = request(loader, applet, "small" + (n + 1) + ".png");
+		}
+
+		for (int n = 0; n < 4; n++)
+		{
+			tnyAsteroids[n] = request(loader, applet, "tiny" + (n + 1) + ".png");
+		}
+	}
+
+	private ImageEntity request(AssetLoader loader, Applet applet, String name)
+	{
+		ImageEntity entity = new ImageEntity(applet);
+		pendingEntities.add(entity);
+		pendingImages.add(loader.loadImage(images_folder + name));
+		return entity;
+	}
+
+	/**
+	 * Return true if every requested image has been decoded
+	 * @return if finish() won't wait
+	 */
+	public boolean isDone()
+	{
+		for (int i = 0; i < pendingImages.size(); i++)
+		{
+			if (!pendingImages.get(i).isDone())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Wait for the requested images and give them to their entities
+	 * @throws IllegalStateException if an image can't be loaded
+	 */
+	public void finish()
+	{
+		for (int i = 0; i < pendingImages.size(); i++)
+		{
+			pendingEntities.get(i).setImage(AssetLoader.get(pendingImages.get(i)));
+		}
+		pendingEntities.clear();
+		pendingImages.clear();
+
+		index(powerupShield, powerupHealth, powerup250, powerup500, powerup1000, powerupGun);
+		index(shipImage);
+		index(bulletImage);
+		index(explosions);
+		index(bigAsteroids);
+		index(medAsteroids);
+		index(smlAsteroids);
+		index(tnyAsteroids);
+	}
+
+	private void index(ImageEntity... entities)
+	{
+		for (ImageEntity entity : entities)
+		{
+			ids.put(entity.getImage(), all.size());
+			all.add(entity.getImage());
+		}
+	}
+
+	/**
+	 * Get the index of an image, which is the same every time the images are loaded
+	 * @param image the image
+	 * @return the index of the image, -1 if it's null or not an image of the game
+	 */
+	public int getImageId(Image image)
+	{
+		Integer id = image != null ? ids.get(image) : null;
+		return id != null ? id : -1;
+	}
+
+	/**
+	 * Get an image by its index
+	 * @param id the index of the image, see getImageId()
+	 * @return the image, null if the index is -1
+	 */
+	public Image getImage(int id)
+	{
+		return id >= 0 ? all.get(id) : null;
+	}
+
+	/**
+	 * Get the number of images, every index is lower
+	 * @return the number of images
+	 */
+	public int getImageCount()
+	{
+		return all.size();
+	}
+}
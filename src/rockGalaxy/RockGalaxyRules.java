@@ -0,0 +1,1028 @@
+package rockGalaxy;
+/**
+ * The rules of the game: spawning, collisions, score and ship controls.
+ * The rules act on a world, so they run the same with or without the applet
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.applet.Applet;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.event.KeyEvent;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+class RockGalaxyRules
+{
+	static final int ASTEROIDS = 8;
+	static final int BULLET_SPEED = 4;
+	static final double ACCELERATION = 0.05;
+	static final double SHIPROTATION = 5.0;
+
+	/* Time the ship is invulnerable after a crash, 3 seconds at 60 ticks per second */
+	static final int INVULNERABILITY_TICKS = 180;
+
+	/* Sprite status */
+	static final int STATE_NORMAL = 0;
+	static final int STATE_COLLIDED = 1;
+	static final int STATE_EXPLODING = 2;
+
+	/* Sprite types */
+	static final int SPRITE_SHIP = 1;
+	static final int SPRITE_ASTEROID_BIG = 10;
+	static final int SPRITE_ASTEROID_MEDIUM = 11;
+	static final int SPRITE_ASTEROID_SMALL = 12;
+	static final int SPRITE_ASTEROID_TINY = 13;
+	static final int SPRITE_BULLET = 100;
+	static final int SPRITE_EXPLOSION = 200;
+	static final int SPRITE_POWERUP_SHIELD = 300;
+	static final int SPRITE_POWERUP_HEALTH = 301;
+	static final int SPRITE_POWERUP_250 = 302;
+	static final int SPRITE_POWERUP_500 = 303;
+	static final int SPRITE_POWERUP_1000 = 304;
+	static final int SPRITE_POWERUP_GUN = 305;
+
+	/* Game states */
+	static final int GAME_MENU = 0;
+	static final int GAME_RUNNING = 1;
+	static final int GAME_OVER = 2;
+	static final int GAME_WON = 3;
+
+	/* Game statistics */
+	static final int MAX_HEALTH = 20;
+	static final int MAX_SHIELD = 20;
+
+	/* Collision layers */
+	static final int LAYER_SHIP = 1;
+	static final int LAYER_ASTEROIDS = 2;
+	static final int LAYER_BULLETS = 4;
+	static final int LAYER_POWERUPS = 8;
+
+	/* Property with the smallest number of sprites updated in parallel, sequential update if not set */
+	static final String PARALLEL_UPDATE_PROPERTY = "rockgalaxy.parallel";
+
+	/* Size of the state written by writeState() */
+	static final int STATE_SIZE = 6 * 4 + 2 * 8 + 1;
+
+	private GameWorld world;
+	private Applet applet;
+	private Graphics2D g2d;
+	private int width;
+	private int height;
+	private boolean collisionTesting = true;
+
+	/* Images of the sprites */
+	private RockGalaxyImages images;
+
+	private int health = MAX_HEALTH;
+	private int shield = MAX_SHIELD;
+	private int score = 0;
+	private int highscore = 0;
+	private int firepower = 1;
+	private int gameState = GAME_MENU;
+
+	/* Handled buttons */
+	protected boolean keyLeft;
+	protected boolean keyRight;
+	protected boolean keyUp;
+	protected boolean keyFire;
+	protected boolean keyB;
+	protected boolean keyC;
+	protected boolean keyShield;
+
+	/* Sound effects, null when the game has no sound */
+	private Sound music;
+	private Sound shoot;
+	private Sound explosion;
+
+	private GameRandom rand;
+	private long collisionTimer = 0; // tick of the last crash
+
+	/* Pools of the sprites spawned during the game */
+	private SpritePool bulletPool;
+	private SpritePool asteroidPool;
+	private SpritePool bigExplosionPool;
+	private SpritePool smallExplosionPool;
+	private SpritePool powerupPool;
+
+	/**
+	 * Constructor
+	 * @param world the world the rules act on
+	 * @param width the width of the screen
+	 * @param height the height of the screen
+	 */
+	RockGalaxyRules(GameWorld world, int width, int height)
+	{
+		this(world, width, height, System.nanoTime());
+	}
+
+	/**
+	 * Constructor
+	 * @param world the world the rules act on
+	 * @param width the width of the screen
+	 * @param height the height of the screen
+	 * @param seed the seed of the random generator of the game
+	 */
+	RockGalaxyRules(GameWorld world, int width, int height, long seed)
+	{
+		this.world = world;
+		this.width = width;
+		this.height = height;
+		this.rand = new GameRandom(seed);
+
+		/* Everything but the explosions warps around the screen */
+		world.setWarpArea(width, height);
+		int[] warping = { SPRITE_SHIP, SPRITE_BULLET, SPRITE_ASTEROID_BIG, SPRITE_ASTEROID_MEDIUM,
+				SPRITE_ASTEROID_SMALL, SPRITE_ASTEROID_TINY, SPRITE_POWERUP_SHIELD, SPRITE_POWERUP_HEALTH,
+				SPRITE_POWERUP_250, SPRITE_POWERUP_500, SPRITE_POWERUP_1000, SPRITE_POWERUP_GUN };
+		for (int type : warping)
+		{
+			world.setWarping(type, true);
+		}
+
+		/* spriteCollision() only handles bullets and the ship hitting asteroids and power ups hitting the ship */
+		world.setCollisionFilter(SPRITE_SHIP, LAYER_SHIP, LAYER_ASTEROIDS);
+		world.setCollisionFilter(SPRITE_BULLET, LAYER_BULLETS, LAYER_ASTEROIDS);
+		int[] asteroids = { SPRITE_ASTEROID_BIG, SPRITE_ASTEROID_MEDIUM, SPRITE_ASTEROID_SMALL, SPRITE_ASTEROID_TINY };
+		for (int type : asteroids)
+		{
+			world.setCollisionFilter(type, LAYER_ASTEROIDS, 0);
+		}
+		int[] powerups = { SPRITE_POWERUP_SHIELD, SPRITE_POWERUP_HEALTH, SPRITE_POWERUP_250,
+				SPRITE_POWERUP_500, SPRITE_POWERUP_1000, SPRITE_POWERUP_GUN };
+		for (int type : powerups)
+		{
+			world.setCollisionFilter(type, LAYER_POWERUPS, LAYER_SHIP);
+		}
+
+		/* spriteUpdate() and spriteDying() only change the sprite they are given, so they can run in parallel if asked */
+		Integer threshold = Integer.getInteger(PARALLEL_UPDATE_PROPERTY);
+		if (threshold != null)
+		{
+			world.setParallelUpdate(ForkJoinPool.commonPool(), threshold);
+		}
+	}
+
+	/**
+	 * Set the sounds of the game
+	 * @param music the music played during the game
+	 * @param shoot the sound of a bullet
+	 * @param explosion the sound of an explosion
+	 */
+	public void setSounds(Sound music, Sound shoot, Sound explosion)
+	{
+		this.music = music;
+		this.shoot = shoot;
+		this.explosion = explosion;
+	}
+
+	private void play(Sound sound)
+	{
+		if (sound != null)
+		{
+			sound.play();
+		}
+	}
+
+	/**
+	 * Load the images of the sprites and put the ship in the world.
+	 * The world is paused until the game starts
+	 * @param applet the applet of the game, null if the game isn't shown
+	 * @param g2d the graphics of the sprites, null if the game isn't shown
+	 */
+	public void load(Applet applet, Graphics2D g2d)
+	{
+		RockGalaxyImages images = new RockGalaxyImages();
+		images.load(applet);
+		start(images, applet, g2d);
+	}
+
+	/**
+	 * Put the ship in the world, using images already loaded.
+	 * The world is paused until the game starts
+	 * @param images the images of the sprites, can be shared by many games
+	 * @param applet the applet of the game, null if the game isn't shown
+	 * @param g2d the graphics of the sprites, null if the game isn't shown
+	 */
+	public void start(RockGalaxyImages images, Applet applet, Graphics2D g2d)
+	{
+		this.images = images;
+		this.applet = applet;
+		this.g2d = g2d;
+
+		AnimatedSprite ship = createSprite();
+		ship.setSpriteType(SPRITE_SHIP);
+		ship.setImage(images.shipImage[0].getImage());
+		ship.setFrameWidth(ship.getImageWidth());
+		ship.setFrameHeight(ship.getImageHeight());
+		ship.setPosition(new Point2D(width/2, height/2));
+		ship.setAlive(true);
+		ship.setState(STATE_EXPLODING); //Invulnerable at start
+		collisionTimer = world.getTickCount();
+		ship.resetPreviousPosition();
+		world.getSprites().add(ship);
+
+		/* Create pools */
+		bulletPool = new SpritePool("bullets", 128, applet, g2d);
+		bulletPool.prefill(36);
+		asteroidPool = new SpritePool("asteroids", 256, applet, g2d);
+		asteroidPool.prefill(ASTEROIDS * 4);
+		bigExplosionPool = new SpritePool("big explosions", 16, applet, g2d);
+		bigExplosionPool.prefill(4);
+		smallExplosionPool = new SpritePool("small explosions", 64, applet, g2d);
+		smallExplosionPool.prefill(16);
+		powerupPool = new SpritePool("powerups", 32, applet, g2d);
+		powerupPool.prefill(8);
+
+		world.pause();
+	}
+
+	/**
+	 * Put the game into the initial state
+	 */
+	private void resetGame()
+	{
+		if (music != null)
+		{
+			music.setLooping(true);
+			music.play();
+		}
+		
+		resetShip();
+		collisionTimer = world.getTickCount();
+		
+		for (int n = 0; n < ASTEROIDS; n++)
+		{
+			createAsteroid();
+		}
+
+		health = MAX_HEALTH;
+		shield = MAX_SHIELD;
+		score = 0;
+		firepower = 2;
+	}
+	
+	/**
+	 * Restore ship initial position, orientation and velocity
+	 */
+	private void resetShip()
+	{
+		AnimatedSprite ship = (AnimatedSprite) world.getSprites().get(0);
+		world.clearSprites();
+
+		ship.getPosition().set(width / 2, height / 2);
+		ship.setFaceAngle(0);
+		ship.setAlive(true);
+		ship.setState(STATE_EXPLODING);
+		ship.getVelocity().set(0, 0);
+		ship.resetPreviousPosition();
+		world.getSprites().add(ship);
+	}
+
+	/**
+	 * Update every tick of time
+	 */
+	public void timedUpdate()
+	{
+		checkInput();
+		
+		if (!world.isPaused() && world.getSpriteCount() == 1)
+		{
+			resetShip();
+			gameState = GAME_WON;
+		}
+	}
+
+	/**
+	 * Get the state of the game: menu, running, over or won
+	 * @return the state of the game
+	 */
+	public int getGameState()
+	{
+		return gameState;
+	}
+
+	/**
+	 * Get the health of the ship
+	 * @return the health
+	 */
+	public int getHealth()
+	{
+		return health;
+	}
+
+	/**
+	 * Get the shield of the ship
+	 * @return the shield
+	 */
+	public int getShield()
+	{
+		return shield;
+	}
+
+	/**
+	 * Get the number of bullets shot at once
+	 * @return the firepower
+	 */
+	public int getFirepower()
+	{
+		return firepower;
+	}
+
+	/**
+	 * Get the score of the current game
+	 * @return the score
+	 */
+	public int getScore()
+	{
+		return score;
+	}
+
+	/**
+	 * Get the best score
+	 * @return the highscore
+	 */
+	public int getHighscore()
+	{
+		return highscore;
+	}
+
+	/**
+	 * Get the image of the firepower powerup
+	 * @return the image of the firepower powerup
+	 */
+	public Image getPowerupGunImage()
+	{
+		return images.powerupGun.getImage();
+	}
+
+	/**
+	 * Get the world the rules act on
+	 * @return the world of the game
+	 */
+	public GameWorld getWorld()
+	{
+		return world;
+	}
+
+	/**
+	 * Get the images of the sprites
+	 * @return the images of the game
+	 */
+	public RockGalaxyImages getImages()
+	{
+		return images;
+	}
+
+	/**
+	 * Create a sprite that doesn't belong to any pool
+	 * @return the sprite
+	 */
+	public AnimatedSprite createSprite()
+	{
+		return new AnimatedSprite(applet, g2d);
+	}
+
+	/**
+	 * Write the statistics, the controls and the random generator of the
+	 * game, STATE_SIZE bytes
+	 * @param buffer the buffer to write to
+	 */
+	public void writeState(ByteBuffer buffer)
+	{
+		buffer.putInt(health);
+		buffer.putInt(shield);
+		buffer.putInt(score);
+		buffer.putInt(highscore);
+		buffer.putInt(firepower);
+		buffer.putInt(gameState);
+		buffer.putLong(collisionTimer);
+		buffer.putLong(rand.getState());
+		int keys = (keyLeft ? 1 : 0) | (keyRight ? 2 : 0) | (keyUp ? 4 : 0) | (keyFire ? 8 : 0)
+				| (keyShield ? 16 : 0) | (collisionTesting ? 32 : 0);
+		buffer.put((byte) keys);
+	}
+
+	/**
+	 * Read the state written by writeState(). The held keys aren't read
+	 * back: they follow the keyboard, which hasn't changed with the load
+	 * @param buffer the buffer to read from
+	 */
+	public void readState(ByteBuffer buffer)
+	{
+		health = buffer.getInt();
+		shield = buffer.getInt();
+		score = buffer.getInt();
+		highscore = buffer.getInt();
+		firepower = buffer.getInt();
+		gameState = buffer.getInt();
+		collisionTimer = buffer.getLong();
+		rand.setState(buffer.getLong());
+		int keys = buffer.get();
+		collisionTesting = (keys & 32) != 0;
+	}
+
+	/**
+	 * Get the pools of the sprites spawned during the game
+	 * @return the pools of the game
+	 */
+	public SpritePool[] getSpritePools()
+	{
+		return new SpritePool[] { bulletPool, asteroidPool, bigExplosionPool, smallExplosionPool, powerupPool };
+	}
+
+	void spriteUpdate(AnimatedSprite sprite) {
+		switch(sprite.getSpriteType()) {
+		case SPRITE_EXPLOSION:
+			if (sprite.getCurrentFrame() == sprite.totalFrames()-1) {
+				world.killSprite(sprite);
+			}
+			break;
+
+		case SPRITE_POWERUP_SHIELD:
+		case SPRITE_POWERUP_HEALTH:
+		case SPRITE_POWERUP_250:
+		case SPRITE_POWERUP_500:
+		case SPRITE_POWERUP_1000:
+		case SPRITE_POWERUP_GUN:
+			double rot = sprite.getRotationRate();
+			if (sprite.getFaceAngle() > 350) {
+				sprite.setRotationRate(rot * -1);
+				sprite.setFaceAngle(350);
+			}
+			else if (sprite.getFaceAngle() < 10) {
+				sprite.setRotationRate(rot * -1);
+				sprite.setFaceAngle(10);
+			}
+			break;
+		}
+	}
+
+	void spriteDying(AnimatedSprite sprite)
+	{
+	}
+
+	void spriteCollision(AnimatedSprite spr1, AnimatedSprite spr2)
+	{
+		if (!collisionTesting)
+		{
+			return;
+		}
+
+		switch(spr1.getSpriteType()) {
+		case SPRITE_BULLET:
+			//il proiettile ha colpito l'asteoride?
+			if (isAsteroid(spr2.getSpriteType())) {
+				bumpScore(5);
+				world.killSprite(spr1);
+				world.killSprite(spr2);
+				breakAsteroid(spr2);
+			}
+			break;
+		case SPRITE_SHIP:
+			//L'asteroide  crashato sull'astronave?
+			if (isAsteroid(spr2.getSpriteType())) {
+				if (spr1.getState() == STATE_NORMAL) {
+					if (keyShield)
+					{
+						shield -= 1;
+					}
+					else
+					{ 
+						collisionTimer = world.getTickCount();
+						spr1.getVelocity().set(0, 0);
+						double x = spr1.getPosition().X() - 10;
+						double y = spr1.getPosition().Y() - 10;
+						startBigExplosion(new Point2D(x, y));
+						spr1.setState(STATE_EXPLODING);
+						//reduci salute della navicella
+						health -= 2;
+						if (health < 0) {
+							gameState = GAME_OVER;
+						}
+						//riduce la potenza di fuoco
+						firepower--;
+						if (firepower < 1) firepower = 1;
+
+					}
+					world.killSprite(spr2);
+					breakAsteroid(spr2);
+				}
+				//rendi l'astronave invincibile temporaneamente
+				else if (spr1.getState() == STATE_EXPLODING) {
+					if (collisionTimer + INVULNERABILITY_TICKS <
+							world.getTickCount()) {
+						spr1.setState(STATE_NORMAL);
+					}
+				}
+			}
+			break;
+		case SPRITE_POWERUP_SHIELD:
+			if (spr2.getSpriteType()==SPRITE_SHIP) {
+				shield += 5;
+				if (shield > 20) shield = 20;
+				world.killSprite(spr1);
+			}
+			break;
+
+		case SPRITE_POWERUP_HEALTH:
+			if (spr2.getSpriteType()==SPRITE_SHIP) {
+				health += 5;
+				if (health > 20) health = 20;
+				world.killSprite(spr1);
+			}
+			break;
+
+		case SPRITE_POWERUP_250:
+			if (spr2.getSpriteType()==SPRITE_SHIP) {
+				bumpScore(250);
+				world.killSprite(spr1);
+			}
+			break;
+
+		case SPRITE_POWERUP_500:
+			if (spr2.getSpriteType()==SPRITE_SHIP) {
+				bumpScore(500);
+				world.killSprite(spr1);
+			}
+			break;
+
+		case SPRITE_POWERUP_1000:
+			if (spr2.getSpriteType()==SPRITE_SHIP) {
+				bumpScore(1000);
+				world.killSprite(spr1);
+			}
+			break;
+
+		case SPRITE_POWERUP_GUN:
+			if (spr2.getSpriteType()==SPRITE_SHIP) {
+				firepower++;
+				if (firepower > 5) firepower = 5;
+				world.killSprite(spr1);
+			}
+			break;
+
+		}
+
+	}
+
+	public void keyDown(int keyCode) {
+		switch(keyCode) {
+		case KeyEvent.VK_LEFT:
+			keyLeft = true;
+			break;
+		case KeyEvent.VK_RIGHT:
+			keyRight = true;
+			break;
+		case KeyEvent.VK_UP:
+			keyUp = true;
+			break;
+		case KeyEvent.VK_CONTROL:
+			keyFire = true;
+			break;
+		case KeyEvent.VK_C:
+			collisionTesting = !collisionTesting;
+			break;
+		case KeyEvent.VK_H:
+			world.setBruteForceCollisions(!world.isBruteForceCollisions());
+			break;
+		case KeyEvent.VK_SHIFT:
+			if ((!keyUp) && (shield > 0))
+				keyShield = true;
+			else
+				keyShield = false;
+			break;
+
+		case KeyEvent.VK_ENTER:
+			if (gameState == GAME_MENU) {
+				resetGame();
+				world.resume();
+				gameState = GAME_RUNNING;
+			}
+			else if (gameState == GAME_OVER || gameState == GAME_WON) {
+				resetGame();
+				world.resume();
+				gameState = GAME_RUNNING;
+			}
+			break;
+
+		case KeyEvent.VK_ESCAPE:
+			if (gameState == GAME_RUNNING) {
+				world.pause();
+				resetShip();
+				world.resume();
+				gameState = GAME_OVER;
+			}
+			break;
+		}
+	}
+
+	public void keyUp(int keyCode) {
+		switch(keyCode) {
+		case KeyEvent.VK_LEFT:
+			keyLeft = false;
+			break;
+		case KeyEvent.VK_RIGHT:
+			keyRight = false;
+			break;
+		case KeyEvent.VK_UP:
+			keyUp = false;
+			break;
+		case KeyEvent.VK_CONTROL:
+			keyFire = false;
+			fireBullet();
+			break;
+		case KeyEvent.VK_SHIFT:
+			keyShield = false;
+			break;
+		}
+	}
+
+	/*****************************************************
+	 * distruzione asteroidi in asteroidi pi piccoli
+	 *****************************************************/
+	private void breakAsteroid(AnimatedSprite sprite)
+	{
+		switch(sprite.getSpriteType()) {
+		case SPRITE_ASTEROID_BIG:
+			//asteroidi medi
+			spawnAsteroid(sprite);
+			spawnAsteroid(sprite);
+			spawnAsteroid(sprite);
+			//disegna esplosione grande
+			startBigExplosion(sprite.getPosition());
+			break;
+		case SPRITE_ASTEROID_MEDIUM:
+			//asteroidi piccoli
+			spawnAsteroid(sprite);
+			spawnAsteroid(sprite);
+			spawnAsteroid(sprite);
+			//disegna esplosione piccola
+			startSmallExplosion(sprite.getPosition());
+			break;
+		case SPRITE_ASTEROID_SMALL:
+			//asteroidi minuscoli
+			spawnAsteroid(sprite);
+			spawnAsteroid(sprite);
+			spawnAsteroid(sprite);
+			//disegna esplosione piccola
+			startSmallExplosion(sprite.getPosition());
+			break;
+		case SPRITE_ASTEROID_TINY:
+			//power up a random
+			spawnPowerup(sprite);
+			//disegna esplosione piccola
+			startSmallExplosion(sprite.getPosition());
+			break;
+		}
+	}
+
+	private void spawnAsteroid(AnimatedSprite sprite) 
+	{
+		AnimatedSprite ast = asteroidPool.obtain();
+		ast.setAlive(true);
+
+		int w = sprite.getImageWidth();
+		int h = sprite.getImageHeight();
+		double x = sprite.getPosition().X() + w/2 + rand.nextInt(20)-40;
+		double y = sprite.getPosition().Y() + h/2 + rand.nextInt(20)-40;
+		ast.getPosition().setX(x);
+		ast.getPosition().setY(y);
+
+		ast.setFaceAngle(rand.nextInt(360));
+		ast.setMoveAngle(rand.nextInt(360));
+		ast.setRotationRate(rand.nextDouble());
+
+		double ang = ast.getMoveAngle() - 90;
+		ast.getVelocity().setX(calculateAngleMoveX(ang));
+		ast.getVelocity().setY(calculateAngleMoveY(ang));
+
+		switch(sprite.getSpriteType()) {
+		case SPRITE_ASTEROID_BIG:
+			ast.setSpriteType(SPRITE_ASTEROID_MEDIUM);
+
+			int i = rand.nextInt(2);
+			ast.setImage(images.medAsteroids[i].getImage());
+			ast.setFrameWidth(images.medAsteroids[i].getWidth());
+			ast.setFrameHeight(images.medAsteroids[i].getHeight());
+
+			break;
+		case SPRITE_ASTEROID_MEDIUM:
+			ast.setSpriteType(SPRITE_ASTEROID_SMALL);
+
+			i = rand.nextInt(3);
+			ast.setImage(images.smlAsteroids[i].getImage());
+			ast.setFrameWidth(images.smlAsteroids[i].getWidth());
+			ast.setFrameHeight(images.smlAsteroids[i].getHeight());
+			break;
+
+		case SPRITE_ASTEROID_SMALL:
+			ast.setSpriteType(SPRITE_ASTEROID_TINY);
+
+			i = rand.nextInt(4);
+			ast.setImage(images.tnyAsteroids[i].getImage());
+			ast.setFrameWidth(images.tnyAsteroids[i].getWidth());
+			ast.setFrameHeight(images.tnyAsteroids[i].getHeight());
+			break;
+		}
+
+		world.spawnSprite(ast);
+	}
+
+	/*****************************************************
+	 * Crea un powerup random
+	 *****************************************************/
+	private void spawnPowerup(AnimatedSprite sprite)
+	{
+		//solo qualche asteroide minuscolo da powerups
+		int n = rand.nextInt(100);
+		if (n > 24) return;
+
+		AnimatedSprite spr = powerupPool.obtain();
+		spr.setRotationRate(8);
+		spr.getPosition().setX(sprite.getPosition().X());
+		spr.getPosition().setY(sprite.getPosition().Y());
+		spr.getVelocity().setX(rand.nextDouble());
+		spr.getVelocity().setY(rand.nextDouble());
+		spr.setLifespan(1500);
+		spr.setAlive(true);
+
+		switch(rand.nextInt(6)) {
+		case 0:
+			spr.setImage(images.powerupShield.getImage());
+			spr.setSpriteType(SPRITE_POWERUP_SHIELD);
+			world.spawnSprite(spr);
+			break;
+
+		case 1:
+			spr.setImage(images.powerupHealth.getImage());
+			spr.setSpriteType(SPRITE_POWERUP_HEALTH);
+			world.spawnSprite(spr);
+			break;
+
+		case 2:
+			spr.setImage(images.powerup250.getImage());
+			spr.setSpriteType(SPRITE_POWERUP_250);
+			world.spawnSprite(spr);
+			break;
+
+		case 3:
+			spr.setImage(images.powerup500.getImage());
+			spr.setSpriteType(SPRITE_POWERUP_500);
+			world.spawnSprite(spr);
+			break;
+
+		case 4:
+			spr.setImage(images.powerup1000.getImage());
+			spr.setSpriteType(SPRITE_POWERUP_1000);
+			world.spawnSprite(spr);
+			break;
+
+		case 5:
+			spr.setImage(images.powerupGun.getImage());
+			spr.setSpriteType(SPRITE_POWERUP_GUN);
+			world.spawnSprite(spr);
+			break;
+
+		}
+	}
+
+	public void createAsteroid()
+	{
+		AnimatedSprite ast = asteroidPool.obtain();
+		ast.setAlive(true);
+		ast.setSpriteType(SPRITE_ASTEROID_BIG);
+
+		int i = rand.nextInt(5);
+		ast.setImage(images.bigAsteroids[i].getImage());
+		ast.setFrameWidth(images.bigAsteroids[i].getWidth());
+		ast.setFrameHeight(images.bigAsteroids[i].getHeight());
+
+		ast.getPosition().setX(rand.nextInt(width - 128));
+		ast.getPosition().setY(rand.nextInt(height - 128));
+
+		ast.setFaceAngle(rand.nextInt(360));
+		ast.setMoveAngle(rand.nextInt(360));
+		ast.setRotationRate(rand.nextDouble());
+
+		double ang = ast.getMoveAngle() - 90;
+		ast.getVelocity().setX(calculateAngleMoveX(ang));
+		ast.getVelocity().setY(calculateAngleMoveY(ang));
+
+		world.spawnSprite(ast);
+	}
+
+	private boolean isAsteroid(int spriteType)
+	{
+		switch(spriteType)
+		{
+		case SPRITE_ASTEROID_BIG:
+		case SPRITE_ASTEROID_MEDIUM:
+		case SPRITE_ASTEROID_SMALL:
+		case SPRITE_ASTEROID_TINY:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	public void checkInput()
+	{
+		if (gameState != GAME_RUNNING) return;
+
+		AnimatedSprite ship = (AnimatedSprite)world.getSprites().get(0);
+		if (keyLeft)
+		{
+			ship.setFaceAngle(ship.getFaceAngle() - SHIPROTATION);
+			if (ship.getFaceAngle() < 0)
+				ship.setFaceAngle(360 - SHIPROTATION);
+
+		} else if (keyRight)
+		{
+			ship.setFaceAngle(ship.getFaceAngle() + SHIPROTATION);
+			if (ship.getFaceAngle() > 360)
+				ship.setFaceAngle(SHIPROTATION);
+		}
+		if (keyUp)
+		{
+			ship.setImage(images.shipImage[1].getImage());
+			applyThrust();
+		}
+		else if (keyShield)
+		{
+			ship.setImage(images.shipImage[2].getImage());
+		}
+		else
+		{
+			ship.setImage(images.shipImage[0].getImage());
+		}
+	}
+
+	public void applyThrust()
+	{
+		AnimatedSprite ship = (AnimatedSprite)world.getSprites().get(0);
+
+		ship.setMoveAngle(ship.getFaceAngle() - 90);
+
+		Point2D vel = ship.getVelocity();
+		vel.add(calculateAngleMoveX(ship.getMoveAngle()) * ACCELERATION,
+				calculateAngleMoveY(ship.getMoveAngle()) * ACCELERATION);
+		vel.set(Math.max(-5, Math.min(5, vel.X())), Math.max(-5, Math.min(5, vel.Y())));
+
+	}
+
+	/*****************************************************
+	 * SBAM!
+	 *****************************************************/
+	public void fireBullet()
+	{
+		switch(firepower)
+		{
+		case 1:
+			shootBullet(0);
+			break;
+
+		case 2:
+			shootBullet(-4);
+			shootBullet(4);
+			break;
+
+		case 3:
+			shootBullet(-4);
+			shootBullet(0);
+			shootBullet(4);
+			break;
+
+		case 4:
+			shootBullet(-5);
+			shootBullet(5);
+			shootBullet(-10);
+			shootBullet(10);
+			break;
+
+		case 5:
+			shootBullet(-6);
+			shootBullet(6);
+			shootBullet(-15);
+			shootBullet(15);
+			shootBullet(-60);
+			shootBullet(60);
+			break;
+		}
+		play(shoot);
+
+	}
+
+	/**
+	 * Spawn a bullet, deviated from the ship direction
+	 * @param angle the deviation in degree
+	 */
+	private void shootBullet(double angle)
+	{
+		AnimatedSprite bul = stockBullet();
+		if (angle != 0)
+		{
+			adjustDirection(bul, angle);
+		}
+		world.spawnSprite(bul);
+	}
+
+	private void adjustDirection(AnimatedSprite sprite, double angle)
+	{
+		angle = sprite.getFaceAngle() + angle;
+		if (angle < 0) angle += 360;
+		else if (angle > 360) angle -= 360;
+		sprite.setFaceAngle(angle);
+		sprite.setMoveAngle(sprite.getFaceAngle()-90);
+		angle = sprite.getMoveAngle();
+		sprite.getVelocity().set(calculateAngleMoveX(angle), calculateAngleMoveY(angle));
+		sprite.getVelocity().scale(BULLET_SPEED);
+	}
+
+	private AnimatedSprite stockBullet()
+	{
+		AnimatedSprite ship = (AnimatedSprite)world.getSprites().get(0);
+
+		AnimatedSprite bul = bulletPool.obtain();
+		bul.setAlive(true);
+		bul.setImage(images.bulletImage.getImage());
+		bul.setFrameWidth(images.bulletImage.getWidth());
+		bul.setFrameHeight(images.bulletImage.getHeight());
+		bul.setSpriteType(SPRITE_BULLET);
+		bul.setLifespan(90);
+		bul.setFaceAngle(ship.getFaceAngle());
+		bul.setMoveAngle(ship.getFaceAngle() - 90);
+		double angle = bul.getMoveAngle();
+		bul.getVelocity().setX(calculateAngleMoveX(angle) * BULLET_SPEED);
+		bul.getVelocity().setY(calculateAngleMoveY(angle) * BULLET_SPEED);
+		bul.getPosition().setX(ship.getCenterX() - bul.getImageWidth()/2);
+		bul.getPosition().setY(ship.getCenterY() - bul.getImageHeight()/2);
+
+		return bul;
+	}
+
+	public void startBigExplosion(Point2D point)
+	{
+		AnimatedSprite expl = bigExplosionPool.obtain();
+		expl.setSpriteType(SPRITE_EXPLOSION);
+		expl.setAlive(true);
+		expl.setAnimImage(images.explosions[0].getImage());
+		expl.setTotalFrames(16);
+		expl.setNumberOfAnimations(4);
+		expl.setFrameWidth(96);
+		expl.setFrameHeight(96);
+		expl.setFrameDelay(2);
+		expl.getPosition().setX(point.X());
+		expl.getPosition().setY(point.Y());
+
+		world.spawnSprite(expl);
+
+		play(explosion);
+	}
+
+	public void startSmallExplosion(Point2D point)
+	{
+		AnimatedSprite expl = smallExplosionPool.obtain();
+		expl.setSpriteType(SPRITE_EXPLOSION);
+		expl.setAlive(true);
+		expl.setAnimImage(images.explosions[1].getImage());
+		expl.setTotalFrames(8);
+		expl.setNumberOfAnimations(4);
+		expl.setFrameWidth(40);
+		expl.setFrameHeight(40);
+		expl.setFrameDelay(2);
+		expl.getPosition().setX(point.X());
+		expl.getPosition().setY(point.Y());
+
+		world.spawnSprite(expl);
+
+		play(explosion);
+
+	}
+
+	public void bumpScore(int howmuch) {
+		score += howmuch;
+		if (score > highscore)
+			highscore = score;
+	}
+
+	/**
+	 * Calculate the x component of the angle in radiant
+	 * @param angle the angle in degree
+	 * @return the x component of the angle
+	 */
+	private double calculateAngleMoveX(double angle)
+	{
+		return (double)(Math.cos(angle * Math.PI / 180));
+	}
+
+	/**
+	 * Calculate the y component of the angle in radiant
+	 * @param angle the angle in degree
+	 * @return the y component of the angle
+	 */
+	private double calculateAngleMoveY(double angle)
+	{
+		return (double) (Math.sin(angle * Math.PI / 180));
+	}
+}
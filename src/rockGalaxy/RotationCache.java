@@ -0,0 +1,130 @@
+package rockGalaxy;
+/**
+ * A cache of images rotated by a quantized angle, so that rotated sprites
+ * can be drawn with a plain copy instead of a rotation of the image.
+ * Rotated images are created the first time they are needed, until the
+ * memory budget is used up; after that the caller has to rotate the image itself
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
+
+class RotationCache
+{
+	private int steps;
+	private long budget;
+	private long used = 0;
+	private IdentityHashMap<Image, BufferedImage[]> rotations = new IdentityHashMap<Image, BufferedImage[]>();
+	private AffineTransform transform = new AffineTransform();
+
+	/**
+	 * Constructor
+	 * @param steps the number of angles a full turn is divided into
+	 * @param budget the maximum memory used by rotated images, in bytes
+	 */
+	RotationCache(int steps, long budget)
+	{
+		this.steps = Math.max(1, steps);
+		this.budget = budget;
+	}
+
+	/**
+	 * Get the number of angles a full turn is divided into
+	 * @return the angle resolution
+	 */
+	public int getSteps()
+	{
+		return steps;
+	}
+
+	/**
+	 * Get the maximum memory used by rotated images
+	 * @return the memory budget, in bytes
+	 */
+	public long getBudget()
+	{
+		return budget;
+	}
+
+	/**
+	 * Get the memory used by rotated images
+	 * @return the used memory, in bytes
+	 */
+	public long getUsed()
+	{
+		return used;
+	}
+
+	/**
+	 * Get the step nearest to an angle
+	 * @param angle the angle in degree
+	 * @return the step, from 0 to steps - 1
+	 */
+	public int step(double angle)
+	{
+		int step = (int) Math.round(angle * steps / 360.0) % steps;
+		return step < 0 ? step + steps : step;
+	}
+
+	/**
+	 * Get an image rotated around its center. The rotated image is a square
+	 * with side getSide(width, height), sharing its center with the image
+	 * @param image the image to rotate
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @param step the quantized angle, see step()
+	 * @return the rotated image, or null if the memory budget is used up
+	 */
+	public BufferedImage get(Image image, int width, int height, int step)
+	{
+		BufferedImage[] images = rotations.get(image);
+		if (images == null)
+		{
+			images = new BufferedImage[steps];
+			rotations.put(image, images);
+		}
+		if (images[step] == null)
+		{
+			int side = getSide(width, height);
+			long size = 4L * side * side;
+			if (used + size > budget)
+			{
+				return null;
+			}
+			used += size;
+			images[step] = rotate(image, width, height, side, step);
+		}
+		return images[step];
+	}
+
+	/**
+	 * Get the side of the square containing an image at every angle
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @return the side of the rotated images
+	 */
+	public int getSide(int width, int height)
+	{
+		return (int) Math.ceil(Math.sqrt((double) width * width + (double) height * height));
+	}
+
+	private BufferedImage rotate(Image image, int width, int height, int side, int step)
+	{
+		BufferedImage rotated = CompatibleImages.create(side, side, Transparency.TRANSLUCENT);
+		Graphics2D g = rotated.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		transform.setToIdentity();
+		transform.translate(side/2, side/2);
+		transform.rotate(Math.toRadians(step * 360.0 / steps));
+		transform.translate(-width/2, -height/2);
+		g.drawImage(image, transform, null);
+		g.dispose();
+		return rotated;
+	}
+}
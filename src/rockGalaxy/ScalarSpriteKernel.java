@@ -0,0 +1,18 @@
+package rockGalaxy;
+/**
+ * The kernel moving the sprites one at a time, always available
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+class ScalarSpriteKernel extends SpriteKernel
+{
+	String getName()
+	{
+		return "scalar";
+	}
+
+	void move(SpriteData data, int count, int areaWidth, int areaHeight, boolean[] types)
+	{
+		data.move(0, count, areaWidth, areaHeight, types);
+	}
+}
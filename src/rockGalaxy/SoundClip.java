@@ -57,7 +57,15 @@ public class SoundClip extends Sound
         try
         {
             setFilename(audiofile);
-            sample = AudioSystem.getAudioInputStream(getURL(getFilename()));
+            AssetArchive archive = AssetLoader.getArchive();
+            if (archive != null && archive.contains(audiofile))
+            {
+                sample = archive.readSound(audiofile);
+            }
+            else
+            {
+                sample = AudioSystem.getAudioInputStream(getURL(getFilename()));
+            }
             clip.open(sample);
             return true;
 
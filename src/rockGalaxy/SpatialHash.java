@@ -0,0 +1,166 @@
+package rockGalaxy;
+/**
+ * A uniform grid spatial hash used as collision broadphase
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+class SpatialHash
+{
+	private int cellSize;
+	private int[] buckets;
+	private int bucketMask;
+
+	/* Entries are kept in parallel arrays, chained per bucket */
+	private int[] entryItem = new int[256];
+	private int[] entryNext = new int[256];
+	private int entryCount = 0;
+
+	/* Used to report every item only once per query */
+	private int[] itemMark = new int[64];
+	private int queryMark = 0;
+
+	/**
+	 * Constructor
+	 * @param cellSize the side of a grid cell in pixels
+	 * @param buckets the number of hash buckets, rounded up to a power of two
+	 */
+	SpatialHash(int cellSize, int buckets)
+	{
+		this.cellSize = cellSize;
+		int size = Integer.highestOneBit(Math.max(buckets - 1, 1)) << 1;
+		this.buckets = new int[size];
+		bucketMask = size - 1;
+		Arrays.fill(this.buckets, -1);
+	}
+
+	/**
+	 * Get the side of a grid cell
+	 * @return the side of a grid cell in pixels
+	 */
+	public int getCellSize()
+	{
+		return cellSize;
+	}
+
+	/**
+	 * Remove every item from the grid
+	 */
+	public void clear()
+	{
+		Arrays.fill(buckets, -1);
+		entryCount = 0;
+	}
+
+	/**
+	 * Insert an item in every cell covered by its bounds
+	 * @param item the index of the item
+	 * @param bounds the bounds of the item
+	 */
+	public void insert(int item, Rectangle bounds)
+	{
+		insert(item, bounds.x, bounds.y, bounds.width, bounds.height);
+	}
+
+	/**
+	 * Insert an item in every cell covered by its bounds
+	 * @param item the index of the item
+	 * @param x the abscissa of the bounds
+	 * @param y the ordinate of the bounds
+	 * @param width the width of the bounds
+	 * @param height the height of the bounds
+	 */
+	public void insert(int item, int x, int y, int width, int height)
+	{
+		if (item >= itemMark.length)
+		{
+			itemMark = Arrays.copyOf(itemMark, Math.max(item + 1, itemMark.length * 2));
+		}
+
+		int minX = cell(x);
+		int minY = cell(y);
+		int maxX = cell(x + width);
+		int maxY = cell(y + height);
+		for (int cy = minY; cy <= maxY; cy++)
+		{
+			for (int cx = minX; cx <= maxX; cx++)
+			{
+				if (entryCount == entryItem.length)
+				{
+					entryItem = Arrays.copyOf(entryItem, entryCount * 2);
+					entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+				}
+				int bucket = hash(cx, cy);
+				entryItem[entryCount] = item;
+				entryNext[entryCount] = buckets[bucket];
+				buckets[bucket] = entryCount;
+				entryCount++;
+			}
+		}
+	}
+
+	/**
+	 * Find the items sharing at least a cell with the given bounds
+	 * @param bounds the area to look into
+	 * @param result the array filled with the items found, in ascending order
+	 * @return the number of items found
+	 */
+	public int query(Rectangle bounds, int[] result)
+	{
+		return query(bounds.x, bounds.y, bounds.width, bounds.height, result);
+	}
+
+	/**
+	 * Find the items sharing at least a cell with the given bounds
+	 * @param x the abscissa of the area to look into
+	 * @param y the ordinate of the area
+	 * @param width the width of the area
+	 * @param height the height of the area
+	 * @param result the array filled with the items found, in ascending order
+	 * @return the number of items found
+	 */
+	public int query(int x, int y, int width, int height, int[] result)
+	{
+		queryMark++;
+		if (queryMark == 0)
+		{
+			Arrays.fill(itemMark, 0);
+			queryMark = 1;
+		}
+
+		int found = 0;
+		int minX = cell(x);
+		int minY = cell(y);
+		int maxX = cell(x + width);
+		int maxY = cell(y + height);
+		for (int cy = minY; cy <= maxY; cy++)
+		{
+			for (int cx = minX; cx <= maxX; cx++)
+			{
+				for (int e = buckets[hash(cx, cy)]; e >= 0; e = entryNext[e])
+				{
+					int item = entryItem[e];
+					if (itemMark[item] != queryMark && found < result.length)
+					{
+						itemMark[item] = queryMark;
+						result[found++] = item;
+					}
+				}
+			}
+		}
+		Arrays.sort(result, 0, found);
+		return found;
+	}
+
+	private int cell(int coordinate)
+	{
+		return Math.floorDiv(coordinate, cellSize);
+	}
+
+	private int hash(int cx, int cy)
+	{
+		return ((cx * 73856093) ^ (cy * 19349663)) & bucketMask;
+	}
+}
@@ -1,6 +1,8 @@
 package rockGalaxy;
 /**
- * A representation of a sprite
+ * A representation of a sprite. Its state lives in a row of a SpriteData:
+ * the one of the store that contains it, or its own one while the sprite
+ * is outside of any store, so the sprite is a view over its row
  * @author Ing. Fabio Brea
  * @version 1.1
  */
@@ -13,14 +15,13 @@ import java.awt.Rectangle;
 public class Sprite
 {
 	private ImageEntity entity;
+	private SpriteData own;
+	protected SpriteData data;
+	protected int row;
 	protected Point2D pos;
 	protected Point2D vel;
-	protected double rotRate;
-	protected int currentState;
-	protected int sprType;
 	protected boolean collided;
-	protected int lifespan;
-	protected int lifeage;
+	protected int handle;
 
 	/**
 	 * Constructor
@@ -32,13 +33,75 @@ public class Sprite
 		entity = new ImageEntity(app);
 		entity.setGraphics(g2d);
 		entity.setAlive(false);
-		pos = new Point2D(0.0, 0.0);
-		vel = new Point2D(0.0, 0.0);
-		rotRate = 0.0;
-		currentState = 0;
+		own = new SpriteData(1);
+		data = own;
+		row = 0;
+		pos = new Position();
+		vel = new Velocity();
 		collided = false;
-		lifespan = 0;
-		lifeage = 0;
+		handle = -1;
+	}
+
+	/**
+	 * Move the state of the sprite to a row of the data of a store
+	 * @param store the data of the store
+	 * @param row the row of the sprite
+	 */
+	void attach(SpriteData store, int row)
+	{
+		if (data != own)
+		{
+			throw new IllegalStateException("The sprite is already stored");
+		}
+		own.copy(0, store, row);
+		data = store;
+		this.row = row;
+	}
+
+	/**
+	 * Move the state of the sprite back to its own data, when it's
+	 * removed from a store
+	 */
+	void detach()
+	{
+		data.copy(row, own, 0);
+		data = own;
+		row = 0;
+	}
+
+	/**
+	 * Set the row of the sprite, when the store moves it
+	 * @param row the new row of the sprite
+	 */
+	void setRow(int row)
+	{
+		this.row = row;
+	}
+
+	/**
+	 * Bring the sprite back to the state it has after construction,
+	 * keeping its image
+	 */
+	public void reset()
+	{
+		entity.setX(0.0);
+		entity.setY(0.0);
+		entity.setVelX(0.0);
+		entity.setVelY(0.0);
+		entity.setFaceAngle(0.0);
+		entity.setMoveAngle(0.0);
+		pos.set(0.0, 0.0);
+		vel.set(0.0, 0.0);
+		data.alive[row] = false;
+		data.prevX[row] = 0.0;
+		data.prevY[row] = 0.0;
+		data.faceAngle[row] = 0.0;
+		data.rotRate[row] = 0.0;
+		data.state[row] = 0;
+		data.type[row] = 0;
+		collided = false;
+		data.lifespan[row] = 0;
+		data.lifeage[row] = 0;
 	}
 
 	/**
@@ -57,15 +120,58 @@ public class Sprite
 	{
 		entity.setX(pos.X());
 		entity.setY(pos.Y());
+		entity.setFaceAngle(data.faceAngle[row]);
+		entity.transform();
+	}
+
+	/**
+	 * Apply the transform to the sprite, placing it between its previous
+	 * and its current position
+	 * @param alpha the fraction of the tick elapsed since the last update, from 0 to 1
+	 */
+	public void transform(double alpha)
+	{
+		entity.setX(getPreviousX() + (pos.X() - getPreviousX()) * alpha);
+		entity.setY(getPreviousY() + (pos.Y() - getPreviousY()) * alpha);
+		entity.setFaceAngle(data.faceAngle[row]);
 		entity.transform();
 	}
 
+	/**
+	 * Get the abscissa the sprite had before the last position update
+	 * @return the previous abscissa of the sprite
+	 */
+	public double getPreviousX()
+	{
+		return data.prevX[row];
+	}
+
+	/**
+	 * Get the ordinate the sprite had before the last position update
+	 * @return the previous ordinate of the sprite
+	 */
+	public double getPreviousY()
+	{
+		return data.prevY[row];
+	}
+
+	/**
+	 * Make the current position the previous one too, so that the sprite
+	 * isn't drawn in between. Must be called whenever the sprite is placed
+	 * rather than moved by its velocity (spawn, warp, reset, load)
+	 */
+	public void resetPreviousPosition()
+	{
+		data.prevX[row] = pos.X();
+		data.prevY[row] = pos.Y();
+	}
+
 	/**
 	 * Draws the sprite on the screen
 	 */
 	public void draw()
 	{
-		entity.graphics2d.drawImage(entity.getImage(),entity.affineTransform,entity.applet);
+		entity.graphics2d.drawImage(entity.getImage(),entity.getAffineTransform(),entity.applet);
 	}
 
 	/**
@@ -83,8 +189,9 @@ public class Sprite
 	 */
 	public void updatePosition()
 	{
-		pos.setX(pos.X() + vel.X());
-		pos.setY(pos.Y() + vel.Y());
+		data.prevX[row] = pos.X();
+		data.prevY[row] = pos.Y();
+		pos.add(vel);
 	}
 
 	/**
@@ -92,7 +199,7 @@ public class Sprite
 	 */
 	public double getRotationRate()
 	{
-		return rotRate;
+		return data.rotRate[row];
 	}
 	
 	/**
@@ -101,7 +208,7 @@ public class Sprite
 	 */
 	public void setRotationRate(double rate)
 	{
-		rotRate = rate;
+		data.rotRate[row] = rate;
 	}
 	
 	/**
@@ -109,6 +216,7 @@ public class Sprite
 	 */
 	public void updateRotation()
 	{
+		double rotRate = getRotationRate();
 		setFaceAngle(getFaceAngle() + rotRate);
 		if (getFaceAngle() < 0)
 		{
@@ -126,7 +234,7 @@ public class Sprite
 	 */
 	public int getState()
 	{
-		return currentState;
+		return data.state[row];
 	}
 	
 	/**
@@ -135,7 +243,7 @@ public class Sprite
 	 */
 	public void setState(int state)
 	{
-		currentState = state;
+		data.state[row] = state;
 	}
 
 	/**
@@ -147,6 +255,42 @@ public class Sprite
 		return entity.getBounds();
 	}
 
+	/**
+	 * Get the left side of the sprite's bounds, without creating a rectangle
+	 * @return the abscissa of the bounds
+	 */
+	public int getBoundsX()
+	{
+		return entity.getBoundsX();
+	}
+
+	/**
+	 * Get the top side of the sprite's bounds
+	 * @return the ordinate of the bounds
+	 */
+	public int getBoundsY()
+	{
+		return entity.getBoundsY();
+	}
+
+	/**
+	 * Get the width of the sprite's bounds
+	 * @return the width of the bounds
+	 */
+	public int getBoundsWidth()
+	{
+		return entity.getBoundsWidth();
+	}
+
+	/**
+	 * Get the height of the sprite's bounds
+	 * @return the height of the bounds
+	 */
+	public int getBoundsHeight()
+	{
+		return entity.getBoundsHeight();
+	}
+
 	/**
 	 * Get the position of the sprite
 	 * @return the position of the sprite
@@ -157,12 +301,12 @@ public class Sprite
 	}
 	
 	/**
-	 * Set the position of the sprite
+	 * Set the position of the sprite, copying the coordinates of a point
 	 * @param pos the position of the sprite
 	 */
 	public void setPosition(Point2D pos)
 	{
-		this.pos = pos;
+		this.pos.set(pos);
 	}
 
 	/**
@@ -175,12 +319,12 @@ public class Sprite
 	}
 	
 	/**
-	 * Set the velocity of the sprite
+	 * Set the velocity of the sprite, copying the components of a vector
 	 * @param vel the velocity of the sprite
 	 */
 	public void setVelocity(Point2D vel)
 	{
-		this.vel = vel;
+		this.vel.set(vel);
 	}
 
 	/**
@@ -192,13 +336,31 @@ public class Sprite
 		return(new Point2D(entity.getCenterX(), entity.getCenterY()));
 	}
 
+	/**
+	 * Get the abscissa of the center of the sprite
+	 * @return the abscissa of the center
+	 */
+	public double getCenterX()
+	{
+		return entity.getCenterX();
+	}
+
+	/**
+	 * Get the ordinate of the center of the sprite
+	 * @return the ordinate of the center
+	 */
+	public double getCenterY()
+	{
+		return entity.getCenterY();
+	}
+
 	/**
 	 * Get the alive status of the sprite
 	 * @return true if the sprite is alive
 	 */
 	public boolean alive()
 	{
-		return entity.isAlive();
+		return data.alive[row];
 	}
 	
 	/**
@@ -207,7 +369,7 @@ public class Sprite
 	 */
 	public void setAlive(boolean alive)
 	{
-		entity.setAlive(alive);
+		data.alive[row] = alive;
 	}
 
 	/**
@@ -216,7 +378,7 @@ public class Sprite
 	 */
 	public double getFaceAngle()
 	{
-		return entity.getFaceAngle();
+		return data.faceAngle[row];
 	}
 	
 	/**
@@ -225,7 +387,7 @@ public class Sprite
 	 */
 	public void setFaceAngle(double angle)
 	{
-		entity.setFaceAngle(angle);
+		data.faceAngle[row] = angle;
 	}
 	
 	/**
@@ -234,7 +396,7 @@ public class Sprite
 	 */
 	public void setFaceAngle(float angle)
 	{
-		entity.setFaceAngle((double) angle);
+		data.faceAngle[row] = angle;
 	}
 	
 	/**
@@ -243,7 +405,7 @@ public class Sprite
 	 */
 	public void setFaceAngle(int angle)
 	{
-		entity.setFaceAngle((double) angle);
+		data.faceAngle[row] = angle;
 	}
 
 	/**
@@ -307,7 +469,7 @@ public class Sprite
 	 */
 	public boolean collidesWith(Rectangle rect)
 	{
-		return (rect.intersects(getBounds()));
+		return entity.intersects(rect.x, rect.y, rect.width, rect.height);
 	}
 	
 	/**
@@ -317,7 +479,7 @@ public class Sprite
 	 */
 	public boolean collidesWith(Sprite sprite)
 	{
-		return (getBounds().intersects(sprite.getBounds()));
+		return entity.intersects(sprite.entity);
 	}
 	
 	/**
@@ -327,7 +489,7 @@ public class Sprite
 	 */
 	public boolean collidesWith(Point2D point)
 	{
-		return (getBounds().contains(point.X(), point.Y()));
+		return entity.contains(point.X(), point.Y());
 	}
 
 	/**
@@ -372,7 +534,7 @@ public class Sprite
 	 */
 	public int getSpriteType()
 	{
-		return sprType;
+		return data.type[row];
 	}
 	
 	/**
@@ -381,7 +543,7 @@ public class Sprite
 	 */
 	public void setSpriteType(int type)
 	{
-		sprType = type;
+		data.type[row] = type;
 	}
 
 	/**
@@ -408,7 +570,7 @@ public class Sprite
 	 */
 	public int getLifespan()
 	{
-		return lifespan;
+		return data.lifespan[row];
 	}
 	
 	/**
@@ -417,7 +579,7 @@ public class Sprite
 	 */
 	public void setLifespan(int life)
 	{
-		lifespan = life;
+		data.lifespan[row] = life;
 	}
 	
 	/**
@@ -426,7 +588,7 @@ public class Sprite
 	 */
 	public int getLifeage()
 	{
-		return lifeage;
+		return data.lifeage[row];
 	}
 	
 	/**
@@ -435,22 +597,138 @@ public class Sprite
 	 */
 	public void setLifeage(int age)
 	{
-		lifeage = age;
+		data.lifeage[row] = age;
 	}
 	
+	/**
+	 * Get the handle of the sprite in the store that contains it
+	 * @return the handle, -1 if the sprite is not stored
+	 */
+	int getHandle()
+	{
+		return handle;
+	}
+
+	/**
+	 * Set the handle of the sprite in the store that contains it
+	 * @param handle the handle of the sprite
+	 */
+	void setHandle(int handle)
+	{
+		this.handle = handle;
+	}
+
 	/**
 	 * Update the life age of the sprite, if it's greater than the life span
 	 * set alive status to false
 	 */
 	public void updateLifetime()
 	{
-		if (lifespan > 0) {
-			lifeage++;
-			if (lifeage > lifespan) {
+		if (data.lifespan[row] > 0) {
+			data.lifeage[row]++;
+			if (data.lifeage[row] > data.lifespan[row]) {
 				setAlive(false);
-				lifeage = 0;
+				data.lifeage[row] = 0;
 			}
 		}
 	}
 
+	/**
+	 * The position of the sprite, a view over the row of the sprite
+	 */
+	private class Position extends Point2D
+	{
+		Position()
+		{
+			super(0.0, 0.0);
+		}
+
+		public double X()
+		{
+			return data.x[row];
+		}
+
+		public double Y()
+		{
+			return data.y[row];
+		}
+
+		public void setX(double x)
+		{
+			data.x[row] = x;
+		}
+
+		public void setY(double y)
+		{
+			data.y[row] = y;
+		}
+
+		public void set(double x, double y)
+		{
+			data.x[row] = x;
+			data.y[row] = y;
+		}
+
+		public void add(double dx, double dy)
+		{
+			data.x[row] += dx;
+			data.y[row] += dy;
+		}
+
+		public void scale(double factor)
+		{
+			data.x[row] *= factor;
+			data.y[row] *= factor;
+		}
+	}
+
+	/**
+	 * The velocity of the sprite, a view over the row of the sprite
+	 */
+	private class Velocity extends Point2D
+	{
+		Velocity()
+		{
+			super(0.0, 0.0);
+		}
+
+		public double X()
+		{
+			return data.vx[row];
+		}
+
+		public double Y()
+		{
+			return data.vy[row];
+		}
+
+		public void setX(double x)
+		{
+			data.vx[row] = x;
+		}
+
+		public void setY(double y)
+		{
+			data.vy[row] = y;
+		}
+
+		public void set(double x, double y)
+		{
+			data.vx[row] = x;
+			data.vy[row] = y;
+		}
+
+		public void add(double dx, double dy)
+		{
+			data.vx[row] += dx;
+			data.vy[row] += dy;
+		}
+
+		public void scale(double factor)
+		{
+			data.vx[row] *= factor;
+			data.vy[row] *= factor;
+		}
+	}
+
 }
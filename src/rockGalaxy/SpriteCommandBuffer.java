@@ -0,0 +1,126 @@
+package rockGalaxy;
+/**
+ * Collects the sprites spawned and killed during a tick, so that the
+ * sprite store is changed only once per tick, when no one is iterating it
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.util.ArrayList;
+
+class SpriteCommandBuffer<E extends Sprite>
+{
+	private ArrayList<E> spawns = new ArrayList<E>();
+	private ArrayList<E> kills = new ArrayList<E>();
+
+	/* Swapped with the lists above while applying, so they can be filled again */
+	private ArrayList<E> applyingSpawns = new ArrayList<E>();
+	private ArrayList<E> applyingKills = new ArrayList<E>();
+	private ArrayList<E> removed = new ArrayList<E>();
+
+	/**
+	 * Queue a sprite to be added to the store
+	 * @param sprite the sprite to add
+	 */
+	public synchronized void spawn(E sprite)
+	{
+		spawns.add(sprite);
+	}
+
+	/**
+	 * Queue a sprite to be removed from the store
+	 * @param sprite the sprite to remove
+	 */
+	public synchronized void kill(E sprite)
+	{
+		kills.add(sprite);
+	}
+
+	/**
+	 * Get the number of sprites waiting to be added
+	 * @return the number of queued spawns
+	 */
+	public synchronized int pendingSpawns()
+	{
+		return spawns.size();
+	}
+
+	/**
+	 * Move the queued commands to another buffer, after its own ones
+	 * @param buffer the buffer to move the commands to
+	 */
+	public synchronized void drainTo(SpriteCommandBuffer<E> buffer)
+	{
+		for (int i = 0; i < spawns.size(); i++)
+		{
+			buffer.spawn(spawns.get(i));
+		}
+		for (int i = 0; i < kills.size(); i++)
+		{
+			buffer.kill(kills.get(i));
+		}
+		spawns.clear();
+		kills.clear();
+	}
+
+	/**
+	 * Discard every queued command
+	 * @return the spawned sprites that will never be added to the store;
+	 * the list is valid until the next call
+	 */
+	public synchronized ArrayList<E> clear()
+	{
+		removed.clear();
+		removed.addAll(spawns);
+		spawns.clear();
+		kills.clear();
+		return removed;
+	}
+
+	/**
+	 * Apply the queued commands to the store: spawned sprites still alive are
+	 * added, then killed sprites are removed
+	 * @param store the store to change
+	 * @return the sprites removed from the game, including spawned sprites
+	 * killed before being added; the list is valid until the next call
+	 */
+	public ArrayList<E> apply(EntityStore<E> store)
+	{
+		ArrayList<E> list;
+		synchronized (this)
+		{
+			list = spawns;
+			spawns = applyingSpawns;
+			applyingSpawns = list;
+
+			list = kills;
+			kills = applyingKills;
+			applyingKills = list;
+		}
+
+		removed.clear();
+		for (int i = 0; i < applyingSpawns.size(); i++)
+		{
+			E sprite = applyingSpawns.get(i);
+			if (sprite.alive())
+			{
+				store.insert(sprite);
+			}
+			else
+			{
+				removed.add(sprite);
+			}
+		}
+		applyingSpawns.clear();
+
+		for (int i = 0; i < applyingKills.size(); i++)
+		{
+			E sprite = applyingKills.get(i);
+			if (store.release(sprite.getHandle()))
+			{
+				removed.add(sprite);
+			}
+		}
+		applyingKills.clear();
+		return removed;
+	}
+}
@@ -0,0 +1,192 @@
+package rockGalaxy;
+/**
+ * The state of many sprites as parallel arrays, one row per sprite, so that
+ * the per tick integration runs as tight loops over primitive arrays instead
+ * of following the references of every sprite. A sprite stored in an
+ * EntityStore reads and writes its row of the store, a sprite outside of
+ * any store owns a data of a single row
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.util.Arrays;
+
+class SpriteData
+{
+	double[] x;
+	double[] y;
+	double[] vx;
+	double[] vy;
+	double[] prevX;
+	double[] prevY;
+	double[] faceAngle;
+	double[] rotRate;
+	int[] type;
+	int[] state;
+	int[] lifespan;
+	int[] lifeage;
+	int[] frame;
+	int[] width;
+	int[] height;
+	boolean[] alive;
+
+	/**
+	 * Constructor
+	 * @param capacity the number of rows
+	 */
+	SpriteData(int capacity)
+	{
+		x = new double[capacity];
+		y = new double[capacity];
+		vx = new double[capacity];
+		vy = new double[capacity];
+		prevX = new double[capacity];
+		prevY = new double[capacity];
+		faceAngle = new double[capacity];
+		rotRate = new double[capacity];
+		type = new int[capacity];
+		state = new int[capacity];
+		lifespan = new int[capacity];
+		lifeage = new int[capacity];
+		frame = new int[capacity];
+		width = new int[capacity];
+		height = new int[capacity];
+		alive = new boolean[capacity];
+	}
+
+	/**
+	 * Get the number of rows
+	 * @return the capacity of the data
+	 */
+	public int capacity()
+	{
+		return x.length;
+	}
+
+	/**
+	 * Grow the arrays, keeping the rows
+	 * @param capacity the new number of rows
+	 */
+	public void grow(int capacity)
+	{
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		vx = Arrays.copyOf(vx, capacity);
+		vy = Arrays.copyOf(vy, capacity);
+		prevX = Arrays.copyOf(prevX, capacity);
+		prevY = Arrays.copyOf(prevY, capacity);
+		faceAngle = Arrays.copyOf(faceAngle, capacity);
+		rotRate = Arrays.copyOf(rotRate, capacity);
+		type = Arrays.copyOf(type, capacity);
+		state = Arrays.copyOf(state, capacity);
+		lifespan = Arrays.copyOf(lifespan, capacity);
+		lifeage = Arrays.copyOf(lifeage, capacity);
+		frame = Arrays.copyOf(frame, capacity);
+		width = Arrays.copyOf(width, capacity);
+		height = Arrays.copyOf(height, capacity);
+		alive = Arrays.copyOf(alive, capacity);
+	}
+
+	/**
+	 * Copy a row to a row of another data, or of the same one
+	 * @param from the row to copy
+	 * @param to the data to copy to
+	 * @param row the row to overwrite
+	 */
+	public void copy(int from, SpriteData to, int row)
+	{
+		to.x[row] = x[from];
+		to.y[row] = y[from];
+		to.vx[row] = vx[from];
+		to.vy[row] = vy[from];
+		to.prevX[row] = prevX[from];
+		to.prevY[row] = prevY[from];
+		to.faceAngle[row] = faceAngle[from];
+		to.rotRate[row] = rotRate[from];
+		to.type[row] = type[from];
+		to.state[row] = state[from];
+		to.lifespan[row] = lifespan[from];
+		to.lifeage[row] = lifeage[from];
+		to.frame[row] = frame[from];
+		to.width[row] = width[from];
+		to.height[row] = height[from];
+		to.alive[row] = alive[from];
+	}
+
+	/**
+	 * Move and rotate the alive sprites of a range of rows, given their
+	 * velocity and rotation rate, keeping the angle between 0 and 360.
+	 * The sprites of the warping types which left the area are brought back
+	 * from the opposite side. Everything is done in a single pass, so every
+	 * row is read once
+	 * @param from the first row
+	 * @param to the row after the last one
+	 * @param areaWidth the width of the area
+	 * @param areaHeight the height of the area
+	 * @param types the types of sprites that warp, indexed by type
+	 */
+	public void move(int from, int to, int areaWidth, int areaHeight, boolean[] types)
+	{
+		for (int i = from; i < to; i++)
+		{
+			if (!alive[i])
+			{
+				continue;
+			}
+
+			double px = x[i];
+			double py = y[i];
+			prevX[i] = px;
+			prevY[i] = py;
+			px += vx[i];
+			py += vy[i];
+
+			double rate = rotRate[i];
+			double angle = faceAngle[i] + rate;
+			if (angle < 0)
+				angle = 360 - rate;
+			else if (angle > 360)
+				angle = rate;
+			faceAngle[i] = angle;
+
+			int t = type[i];
+			if (t >= 0 && t < types.length && types[t])
+			{
+				int w = width[i] - 1;
+				int h = height[i] - 1;
+				/* A warped sprite is placed, not moved: its previous position is reset too */
+				if (px < 0 - w)
+					px = prevX[i] = areaWidth;
+				else if (px > areaWidth)
+					px = prevX[i] = 0 - w;
+				if (py < 0 - h)
+					py = prevY[i] = areaHeight;
+				else if (py > areaHeight)
+					py = prevY[i] = 0 - h;
+			}
+			x[i] = px;
+			y[i] = py;
+		}
+	}
+
+	/**
+	 * Age the alive sprites of a range of rows with a life span, killing
+	 * the ones older than it
+	 * @param from the first row
+	 * @param to the row after the last one
+	 */
+	public void age(int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			if (alive[i] && lifespan[i] > 0)
+			{
+				lifeage[i]++;
+				if (lifeage[i] > lifespan[i])
+				{
+					alive[i] = false;
+					lifeage[i] = 0;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package rockGalaxy;
+/**
+ * The loop moving, rotating and warping the sprites every tick, see
+ * SpriteData.move(). The scalar kernel always works; the vector one uses
+ * the SIMD instructions of the CPU through the Vector API, and is only
+ * available when it has been compiled (folder vector) and the JVM runs
+ * with --add-modules jdk.incubator.vector. Both give exactly the same
+ * results, so a game plays the same with either; SpriteBenchmark -verify
+ * checks it.
+ * The kernel is chosen at startup by the property rockgalaxy.kernel:
+ * scalar, vector or auto (the default: vector if available, scalar otherwise)
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+abstract class SpriteKernel
+{
+	static final String PROPERTY = "rockgalaxy.kernel";
+
+	private static final Class<?> VECTOR_KERNEL = findVectorKernel();
+
+	/**
+	 * Get the name of the kernel
+	 * @return the name
+	 */
+	abstract String getName();
+
+	/**
+	 * Move, rotate and warp the alive sprites of the first rows
+	 * @param data the sprites
+	 * @param count the number of rows
+	 * @param areaWidth the width of the area the sprites warp around
+	 * @param areaHeight the height of the area the sprites warp around
+	 * @param types the types of sprites that warp, indexed by type
+	 */
+	abstract void move(SpriteData data, int count, int areaWidth, int areaHeight, boolean[] types);
+
+	/**
+	 * Create the kernel chosen at startup. Every world needs its own kernel
+	 * @return the kernel
+	 */
+	static SpriteKernel create()
+	{
+		return create(System.getProperty(PROPERTY, "auto"));
+	}
+
+	/**
+	 * Create a kernel
+	 * @param name scalar, vector or auto
+	 * @return the kernel
+	 * @throws IllegalArgumentException if the name is unknown, or the vector
+	 * kernel is asked for but isn't available
+	 */
+	static SpriteKernel create(String name)
+	{
+		if (name.equals("scalar"))
+		{
+			return new ScalarSpriteKernel();
+		}
+		if (!name.equals("vector") && !name.equals("auto"))
+		{
+			throw new IllegalArgumentException("Unknown kernel " + name);
+		}
+		if (VECTOR_KERNEL != null)
+		{
+			try
+			{
+				return (SpriteKernel) VECTOR_KERNEL.getDeclaredConstructor().newInstance();
+			}
+			catch (ReflectiveOperationException e)
+			{
+				/* The CPU has no useful vector shape, fall back */
+			}
+		}
+		if (name.equals("vector"))
+		{
+			throw new IllegalArgumentException("The vector kernel isn't available");
+		}
+		return new ScalarSpriteKernel();
+	}
+
+	private static Class<?> findVectorKernel()
+	{
+		if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+		{
+			return null;
+		}
+		try
+		{
+			return Class.forName("rockGalaxy.VectorSpriteKernel");
+		}
+		catch (ClassNotFoundException e)
+		{
+			return null;
+		}
+		catch (LinkageError e)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package rockGalaxy;
+/**
+ * A bounded pool of sprites, reused instead of allocating a new sprite
+ * every time one is spawned
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.applet.Applet;
+import java.awt.Graphics2D;
+
+class SpritePool
+{
+	private String name;
+	private Applet applet;
+	private Graphics2D g2d;
+	private AnimatedSprite[] free;
+	private int freeCount = 0;
+
+	/* Statistics, useful to size the pool */
+	private long hits = 0;
+	private long misses = 0;
+	private long releases = 0;
+	private long discards = 0;
+
+	/**
+	 * Constructor
+	 * @param name the name of the pool
+	 * @param capacity the maximum number of sprites kept in the pool
+	 * @param applet the applet of the sprites
+	 * @param g2d the graphics of the sprites
+	 */
+	SpritePool(String name, int capacity, Applet applet, Graphics2D g2d)
+	{
+		this.name = name;
+		this.applet = applet;
+		this.g2d = g2d;
+		free = new AnimatedSprite[capacity];
+	}
+
+	/**
+	 * Fill the pool, so that the first sprites don't need to be allocated
+	 * @param count the number of sprites to create
+	 */
+	public synchronized void prefill(int count)
+	{
+		while (freeCount < Math.min(count, free.length))
+		{
+			free[freeCount++] = create();
+		}
+	}
+
+	/**
+	 * Get a clean sprite from the pool, allocating it if the pool is empty
+	 * @return the sprite
+	 */
+	public synchronized AnimatedSprite obtain()
+	{
+		if (freeCount > 0)
+		{
+			hits++;
+			AnimatedSprite sprite = free[--freeCount];
+			free[freeCount] = null;
+			return sprite;
+		}
+		misses++;
+		return create();
+	}
+
+	/**
+	 * Give a sprite back to the pool. The sprite is reset, and dropped if
+	 * the pool is full
+	 * @param sprite the sprite to give back
+	 */
+	public synchronized void release(AnimatedSprite sprite)
+	{
+		releases++;
+		sprite.reset();
+		if (freeCount < free.length)
+		{
+			free[freeCount++] = sprite;
+		}
+		else
+		{
+			discards++;
+		}
+	}
+
+	private AnimatedSprite create()
+	{
+		AnimatedSprite sprite = new AnimatedSprite(applet, g2d);
+		sprite.setPool(this);
+		return sprite;
+	}
+
+	/**
+	 * Get the name of the pool
+	 * @return the name of the pool
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Get the maximum number of sprites kept in the pool
+	 * @return the capacity of the pool
+	 */
+	public int getCapacity()
+	{
+		return free.length;
+	}
+
+	/**
+	 * Get the number of sprites ready to be reused
+	 * @return the number of free sprites
+	 */
+	public synchronized int getFree()
+	{
+		return freeCount;
+	}
+
+	/**
+	 * Get the number of sprites obtained without allocation
+	 * @return the number of hits
+	 */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * Get the number of sprites allocated because the pool was empty
+	 * @return the number of misses
+	 */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * Get the number of sprites given back to the pool
+	 * @return the number of releases
+	 */
+	public synchronized long getReleases()
+	{
+		return releases;
+	}
+
+	/**
+	 * Get the number of sprites dropped because the pool was full
+	 * @return the number of discards
+	 */
+	public synchronized long getDiscards()
+	{
+		return discards;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return name + ": capacity " + free.length + ", free " + freeCount + ", hits " + hits
+				+ ", misses " + misses + ", releases " + releases + ", discards " + discards;
+	}
+}
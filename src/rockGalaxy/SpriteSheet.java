@@ -0,0 +1,95 @@
+package rockGalaxy;
+/**
+ * The frames of an animation, sliced once from the image containing all of
+ * them and shared by every sprite using the same image
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentHashMap;
+
+class SpriteSheet
+{
+	/* Read without locking, many games may look frames up at the same time */
+	private static ConcurrentHashMap<SpriteSheet, SpriteSheet> sheets = new ConcurrentHashMap<SpriteSheet, SpriteSheet>();
+
+	private Image image;
+	private int frameWidth;
+	private int frameHeight;
+	private int columns;
+	private BufferedImage[] frames;
+
+	private SpriteSheet(Image image, int frameWidth, int frameHeight, int columns)
+	{
+		this.image = image;
+		this.frameWidth = frameWidth;
+		this.frameHeight = frameHeight;
+		this.columns = columns;
+	}
+
+	/**
+	 * Get the frames of an image, slicing it the first time
+	 * @param image the image containing the frames, row by row
+	 * @param frameWidth the width of a frame
+	 * @param frameHeight the height of a frame
+	 * @param columns the number of frames in a row
+	 * @param total the number of frames
+	 * @return the frames, which must not be modified
+	 */
+	public static BufferedImage[] getFrames(Image image, int frameWidth, int frameHeight, int columns, int total)
+	{
+		SpriteSheet key = new SpriteSheet(image, frameWidth, frameHeight, columns);
+		SpriteSheet sheet = sheets.get(key);
+		if (sheet != null && sheet.frames.length >= total)
+		{
+			return sheet.frames;
+		}
+		synchronized (sheets)
+		{
+			sheet = sheets.get(key);
+			if (sheet == null || sheet.frames.length < total)
+			{
+				key.slice(total);
+				sheets.put(key, key);
+				sheet = key;
+			}
+			return sheet.frames;
+		}
+	}
+
+	private void slice(int total)
+	{
+		frames = new BufferedImage[total];
+		for (int n = 0; n < total; n++)
+		{
+			int frameX = (n % columns) * frameWidth;
+			int frameY = (n / columns) * frameHeight;
+			frames[n] = CompatibleImages.create(frameWidth, frameHeight, Transparency.TRANSLUCENT);
+			Graphics2D g = frames[n].createGraphics();
+			g.drawImage(image, 0, 0, frameWidth, frameHeight,
+					frameX, frameY, frameX + frameWidth, frameY + frameHeight, null);
+			g.dispose();
+		}
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		if (!(other instanceof SpriteSheet))
+		{
+			return false;
+		}
+		SpriteSheet sheet = (SpriteSheet) other;
+		return image == sheet.image && frameWidth == sheet.frameWidth
+				&& frameHeight == sheet.frameHeight && columns == sheet.columns;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return System.identityHashCode(image) * 31 + (frameWidth * 31 + frameHeight) * 31 + columns;
+	}
+}
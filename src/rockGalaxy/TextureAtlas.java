@@ -0,0 +1,239 @@
+package rockGalaxy;
+/**
+ * A few large images, the pages, holding many small images side by side,
+ * so that the sprites can be drawn as regions of a few pages rather than
+ * from many separate images. Images are copied into the pages the first
+ * time they are added, in rows of images of similar height, until the
+ * pages are full; images that don't fit are drawn from their own image
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+class TextureAtlas
+{
+	/* Empty pixels around every region */
+	private static final int PADDING = 1;
+
+	private int pageSize;
+	private int maxPages;
+	private ArrayList<BufferedImage> pages = new ArrayList<BufferedImage>();
+	private Graphics2D pageGraphics;
+
+	/* The row being filled in the last page */
+	private int rowX = 0;
+	private int rowY = 0;
+	private int rowHeight = 0;
+
+	/* Regions, as parallel arrays */
+	private IdentityHashMap<Image, Integer> regions = new IdentityHashMap<Image, Integer>();
+	private IdentityHashMap<Image, Boolean> rejected = new IdentityHashMap<Image, Boolean>();
+	private int regionCount = 0;
+	private int[] regionPage = new int[64];
+	private int[] regionX = new int[64];
+	private int[] regionY = new int[64];
+	private int[] regionWidth = new int[64];
+	private int[] regionHeight = new int[64];
+
+	/**
+	 * Constructor
+	 * @param pageSize the side of the pages, in pixels
+	 * @param maxPages the maximum number of pages
+	 */
+	TextureAtlas(int pageSize, int maxPages)
+	{
+		this.pageSize = pageSize;
+		this.maxPages = maxPages;
+	}
+
+	/**
+	 * Get the side of the pages
+	 * @return the side of the pages, in pixels
+	 */
+	public int getPageSize()
+	{
+		return pageSize;
+	}
+
+	/**
+	 * Get the number of pages created so far
+	 * @return the number of pages
+	 */
+	public int getPageCount()
+	{
+		return pages.size();
+	}
+
+	/**
+	 * Get the maximum number of pages
+	 * @return the maximum number of pages
+	 */
+	public int getMaxPages()
+	{
+		return maxPages;
+	}
+
+	/**
+	 * Get a page
+	 * @param page the index of the page
+	 * @return the image of the page
+	 */
+	public BufferedImage getPage(int page)
+	{
+		return pages.get(page);
+	}
+
+	/**
+	 * Get the number of images in the pages
+	 * @return the number of regions
+	 */
+	public int getRegionCount()
+	{
+		return regionCount;
+	}
+
+	/**
+	 * Get the region of an image, adding the image to the pages if it isn't yet
+	 * @param image the image
+	 * @return the region, -1 if the image doesn't fit in the pages
+	 */
+	public int getRegion(Image image)
+	{
+		Integer region = regions.get(image);
+		if (region != null)
+		{
+			return region;
+		}
+		return rejected.containsKey(image) ? -1 : add(image);
+	}
+
+	/**
+	 * Add images to the pages, so that they are ready when first drawn
+	 * @param images the images to add
+	 */
+	public void addAll(Image... images)
+	{
+		for (Image image : images)
+		{
+			getRegion(image);
+		}
+	}
+
+	/**
+	 * Get the page of a region
+	 * @param region the region
+	 * @return the index of the page
+	 */
+	public int getRegionPage(int region)
+	{
+		return regionPage[region];
+	}
+
+	/**
+	 * Get the width of a region
+	 * @param region the region
+	 * @return the width of the image of the region
+	 */
+	public int getRegionWidth(int region)
+	{
+		return regionWidth[region];
+	}
+
+	/**
+	 * Get the height of a region
+	 * @param region the region
+	 * @return the height of the image of the region
+	 */
+	public int getRegionHeight(int region)
+	{
+		return regionHeight[region];
+	}
+
+	/**
+	 * Draw the image of a region
+	 * @param g2d the graphics to draw on
+	 * @param region the region
+	 * @param x the abscissa of the top left corner
+	 * @param y the ordinate of the top left corner
+	 */
+	public void draw(Graphics2D g2d, int region, int x, int y)
+	{
+		int sx = regionX[region];
+		int sy = regionY[region];
+		int w = regionWidth[region];
+		int h = regionHeight[region];
+		g2d.drawImage(pages.get(regionPage[region]), x, y, x + w, y + h, sx, sy, sx + w, sy + h, null);
+	}
+
+	private int add(Image image)
+	{
+		int w = image.getWidth(null);
+		int h = image.getHeight(null);
+		if (w <= 0 || h <= 0 || w + PADDING > pageSize || h + PADDING > pageSize || !reserve(w + PADDING, h + PADDING))
+		{
+			rejected.put(image, Boolean.TRUE);
+			return -1;
+		}
+
+		if (regionCount == regionPage.length)
+		{
+			int capacity = regionCount * 2;
+			regionPage = Arrays.copyOf(regionPage, capacity);
+			regionX = Arrays.copyOf(regionX, capacity);
+			regionY = Arrays.copyOf(regionY, capacity);
+			regionWidth = Arrays.copyOf(regionWidth, capacity);
+			regionHeight = Arrays.copyOf(regionHeight, capacity);
+		}
+		int region = regionCount++;
+		regionPage[region] = pages.size() - 1;
+		regionX[region] = rowX;
+		regionY[region] = rowY;
+		regionWidth[region] = w;
+		regionHeight[region] = h;
+		pageGraphics.drawImage(image, rowX, rowY, null);
+		rowX += w + PADDING;
+		rowHeight = Math.max(rowHeight, h + PADDING);
+		regions.put(image, region);
+		return region;
+	}
+
+	/**
+	 * Make room for an image in the last page, starting a new row or a new page if needed
+	 * @return false if every page is full
+	 */
+	private boolean reserve(int w, int h)
+	{
+		if (!pages.isEmpty() && rowX + w > pageSize)
+		{
+			rowX = 0;
+			rowY += rowHeight;
+			rowHeight = 0;
+		}
+		if (pages.isEmpty() || rowY + h > pageSize)
+		{
+			if (pages.size() == maxPages)
+			{
+				return false;
+			}
+			if (pageGraphics != null)
+			{
+				pageGraphics.dispose();
+			}
+			BufferedImage page = CompatibleImages.create(pageSize, pageSize, Transparency.TRANSLUCENT);
+			pages.add(page);
+			pageGraphics = page.createGraphics();
+			pageGraphics.setComposite(AlphaComposite.Src);
+			rowX = 0;
+			rowY = 0;
+			rowHeight = 0;
+		}
+		return true;
+	}
+}
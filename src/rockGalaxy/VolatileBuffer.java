@@ -0,0 +1,130 @@
+package rockGalaxy;
+/**
+ * An image to draw the frames on, stored in the memory of the graphics
+ * card. Its contents may be lost at any time, when the screen mode changes
+ * or another application takes the card: frames are drawn again until
+ * contentsLost() is false, and the image is created again when it no longer
+ * matches the screen. Without a screen it's a plain image in memory
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+class VolatileBuffer
+{
+	private int width;
+	private int height;
+	private VolatileImage volatileImage;
+	private Image image;
+	private Graphics2D graphics;
+	private int restoreCount = 0;
+
+	/**
+	 * Constructor
+	 * @param width the width of the buffer
+	 * @param height the height of the buffer
+	 */
+	VolatileBuffer(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		create();
+	}
+
+	private void create()
+	{
+		/* The graphics of a replaced image aren't disposed, they may still be held by the sprites */
+		volatileImage = CompatibleImages.createVolatile(width, height);
+		if (volatileImage != null)
+		{
+			image = volatileImage;
+			graphics = volatileImage.createGraphics();
+		}
+		else
+		{
+			BufferedImage buffer = CompatibleImages.create(width, height, Transparency.OPAQUE);
+			image = buffer;
+			graphics = buffer.createGraphics();
+		}
+	}
+
+	/**
+	 * Make the buffer ready to be drawn on, restoring it if its contents
+	 * were lost and creating it again if it no longer matches the screen.
+	 * Must be called before drawing every frame
+	 * @return the graphics to draw the frame with
+	 */
+	public Graphics2D validate()
+	{
+		if (volatileImage != null)
+		{
+			GraphicsConfiguration config = CompatibleImages.getConfiguration();
+			int state = volatileImage.validate(config);
+			if (state == VolatileImage.IMAGE_INCOMPATIBLE)
+			{
+				volatileImage.flush();
+				create();
+				restoreCount++;
+			}
+			else if (state == VolatileImage.IMAGE_RESTORED)
+			{
+				restoreCount++;
+			}
+		}
+		return graphics;
+	}
+
+	/**
+	 * Return true if the contents of the buffer were lost since the last
+	 * validate(), so the frame must be drawn again
+	 * @return if the frame drawn was lost
+	 */
+	public boolean contentsLost()
+	{
+		return volatileImage != null && volatileImage.contentsLost();
+	}
+
+	/**
+	 * Get the image of the buffer, to copy it on the screen
+	 * @return the image
+	 */
+	public Image getImage()
+	{
+		return image;
+	}
+
+	/**
+	 * Get the graphics of the buffer
+	 * @return the graphics, the same until the buffer is created again
+	 */
+	public Graphics2D getGraphics()
+	{
+		return graphics;
+	}
+
+	/**
+	 * Get the number of times the buffer was restored or created again
+	 * @return the number of lost buffers
+	 */
+	public int getRestoreCount()
+	{
+		return restoreCount;
+	}
+
+	/**
+	 * Release the memory of the buffer
+	 */
+	public void dispose()
+	{
+		graphics.dispose();
+		if (volatileImage != null)
+		{
+			volatileImage.flush();
+		}
+	}
+}
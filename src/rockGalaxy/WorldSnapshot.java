@@ -0,0 +1,402 @@
+package rockGalaxy;
+/**
+ * A copy of what is needed to draw the sprites of a tick, written by the
+ * simulation thread and read by the render thread
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+class WorldSnapshot
+{
+	private long sequence = 0;
+	private long tick = 0;
+	private long time = 0;
+	private boolean paused = false;
+	private int count = 0;
+
+	private double[] startX = new double[0];
+	private double[] startY = new double[0];
+	private double[] endX = new double[0];
+	private double[] endY = new double[0];
+	private double[] angle = new double[0];
+	private int[] type = new int[0];
+	private int[] width = new int[0];
+	private int[] height = new int[0];
+	private Image[] image = new Image[0];
+	private int[] boundsX = new int[0];
+	private int[] boundsY = new int[0];
+	private int[] boundsWidth = new int[0];
+	private int[] boundsHeight = new int[0];
+	private boolean[] collided = new boolean[0];
+
+	/* What the game shows besides the sprites, like the score, set by the game when the snapshot is taken */
+	static final int MAX_VALUES = 8;
+	private int screen = 0;
+	private int[] values = new int[MAX_VALUES];
+
+	private AffineTransform transform = new AffineTransform();
+	private RotationCache rotations;
+
+	/* Set by place(): the image to copy for a sprite and where, null if it must be transformed */
+	private Image placedImage;
+	private int placedX;
+	private int placedY;
+	private int placedCenterX;
+	private int placedCenterY;
+
+	/* Batched drawing: the region and the position of every sprite, and the sprites sorted by page */
+	private int[] drawRegion = new int[0];
+	private int[] drawX = new int[0];
+	private int[] drawY = new int[0];
+	private int[] drawOrder = new int[0];
+	private int[] pageStart = new int[0];
+
+	/**
+	 * Get the number of the snapshot, which grows with every published
+	 * snapshot even when the game goes back to an older tick
+	 * @return the sequence number of the snapshot
+	 */
+	public long getSequence()
+	{
+		return sequence;
+	}
+
+	/**
+	 * Get the tick of the game the snapshot has been taken at
+	 * @return the tick count of the game
+	 */
+	public long getTick()
+	{
+		return tick;
+	}
+
+	/**
+	 * Get the time the snapshot refers to
+	 * @return the time, in nanoseconds
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * Return true if the game was paused when the snapshot has been taken
+	 * @return if the game was paused
+	 */
+	public boolean isPaused()
+	{
+		return paused;
+	}
+
+	/**
+	 * Get the number of sprites in the snapshot
+	 * @return the number of sprites
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Get the type of a sprite of the snapshot
+	 * @param index the position of the sprite in the snapshot
+	 * @return the sprite type
+	 */
+	public int getType(int index)
+	{
+		return type[index];
+	}
+
+	/**
+	 * Get the screen the game was showing when the snapshot has been taken
+	 * @return the screen, defined by the game
+	 */
+	public int getScreen()
+	{
+		return screen;
+	}
+
+	/**
+	 * Set the screen the game is showing. Must be called by the simulation thread
+	 * @param screen the screen, defined by the game
+	 */
+	public void setScreen(int screen)
+	{
+		this.screen = screen;
+	}
+
+	/**
+	 * Get a value shown by the game when the snapshot has been taken
+	 * @param key the value, from 0 to MAX_VALUES - 1, defined by the game
+	 * @return the value
+	 */
+	public int getValue(int key)
+	{
+		return values[key];
+	}
+
+	/**
+	 * Set a value shown by the game. Must be called by the simulation thread
+	 * @param key the value, from 0 to MAX_VALUES - 1, defined by the game
+	 * @param value the value
+	 */
+	public void setValue(int key, int value)
+	{
+		values[key] = value;
+	}
+
+	/**
+	 * Get the bounds of a sprite of the snapshot
+	 * @param index the position of the sprite in the snapshot
+	 * @param bounds the rectangle to set to the bounds
+	 * @return the bounds
+	 */
+	public Rectangle getBounds(int index, Rectangle bounds)
+	{
+		bounds.setBounds(boundsX[index], boundsY[index], boundsWidth[index], boundsHeight[index]);
+		return bounds;
+	}
+
+	/**
+	 * Return true if a sprite of the snapshot had collided when the snapshot has been taken
+	 * @param index the position of the sprite in the snapshot
+	 * @return if the sprite had collided
+	 */
+	public boolean hasCollided(int index)
+	{
+		return collided[index];
+	}
+
+	/**
+	 * Copy the alive sprites of the store. Must be called by the simulation thread
+	 * @param sprites the sprites of the game
+	 * @param sequence the number of the snapshot, greater than the one of the previous snapshot
+	 * @param tick the number of the tick
+	 * @param time the time of the tick, in nanoseconds
+	 * @param paused if the game is paused
+	 */
+	public void capture(EntityStore<AnimatedSprite> sprites, long sequence, long tick, long time, boolean paused)
+	{
+		this.sequence = sequence;
+		this.tick = tick;
+		this.time = time;
+		this.paused = paused;
+		ensureCapacity(sprites.size());
+
+		count = 0;
+		for (int i = sprites.nextAlive(0); i >= 0; i = sprites.nextAlive(i + 1))
+		{
+			AnimatedSprite spr = sprites.get(i);
+			spr.updateFrame();
+			spr.transform();
+
+			startX[count] = spr.getPreviousX();
+			startY[count] = spr.getPreviousY();
+			endX[count] = spr.getPosition().X();
+			endY[count] = spr.getPosition().Y();
+			angle[count] = spr.getFaceAngle();
+			type[count] = spr.getSpriteType();
+			boundsX[count] = spr.getBoundsX();
+			boundsY[count] = spr.getBoundsY();
+			boundsWidth[count] = spr.getBoundsWidth();
+			boundsHeight[count] = spr.getBoundsHeight();
+			collided[count] = spr.hasCollided();
+			/* Animated sprites show the shared image of their current frame */
+			image[count] = spr.getImage();
+			width[count] = spr.getImageWidth();
+			height[count] = spr.getImageHeight();
+			count++;
+		}
+
+		/* Don't keep the images of removed sprites reachable */
+		for (int i = count; i < image.length && image[i] != null; i++)
+		{
+			image[i] = null;
+		}
+	}
+
+	/**
+	 * Prepare to draw the sprites of the snapshot on a graphics
+	 * @param g2d the graphics to draw on
+	 * @param cache the cache of rotated images, null to rotate every image while drawing
+	 */
+	public void beginDraw(Graphics2D g2d, RotationCache cache)
+	{
+		rotations = cache;
+	}
+
+	/**
+	 * Draw a sprite of the snapshot, after beginDraw(). Must be called by the render thread
+	 * @param index the position of the sprite in the snapshot
+	 * @param g2d the graphics to draw on
+	 * @param alpha the fraction of the tick elapsed since the snapshot, from 0 to 1
+	 */
+	public void draw(int index, Graphics2D g2d, double alpha)
+	{
+		if (image[index] != null)
+		{
+			place(index, alpha);
+			if (placedImage != null)
+			{
+				g2d.drawImage(placedImage, placedX, placedY, null);
+				return;
+			}
+			setTransform(placedCenterX, placedCenterY, width[index], height[index], angle[index]);
+			g2d.drawImage(image[index], transform, null);
+		}
+	}
+
+	/**
+	 * Draw every sprite of the snapshot, after beginDraw(), copying the
+	 * images from the pages of an atlas page by page, so that consecutive
+	 * draws read from the same image. The sprites of a page are drawn in
+	 * their order, the sprites whose image isn't in the atlas are drawn last.
+	 * Must be called by the render thread
+	 * @param g2d the graphics to draw on
+	 * @param alpha the fraction of the tick elapsed since the snapshot, from 0 to 1
+	 * @param atlas the atlas the images are copied to the first time they are drawn
+	 */
+	public void drawBatched(Graphics2D g2d, double alpha, TextureAtlas atlas)
+	{
+		if (drawRegion.length < count)
+		{
+			int capacity = Math.max(count, drawRegion.length * 2);
+			drawRegion = new int[capacity];
+			drawX = new int[capacity];
+			drawY = new int[capacity];
+			drawOrder = new int[capacity];
+		}
+		if (pageStart.length < atlas.getMaxPages() + 1)
+		{
+			pageStart = new int[atlas.getMaxPages() + 1];
+		}
+		Arrays.fill(pageStart, 0);
+
+		int pending = 0;
+		for (int i = 0; i < count; i++)
+		{
+			drawRegion[i] = -1;
+			if (image[i] == null)
+			{
+				continue;
+			}
+			place(i, alpha);
+			if (placedImage != null)
+			{
+				int region = atlas.getRegion(placedImage);
+				if (region >= 0)
+				{
+					drawRegion[i] = region;
+					drawX[i] = placedX;
+					drawY[i] = placedY;
+					pageStart[atlas.getRegionPage(region) + 1]++;
+					continue;
+				}
+			}
+			pending++;
+		}
+
+		/* Counting sort by page, keeping the order of the sprites of a page */
+		int pages = atlas.getPageCount();
+		for (int p = 0; p < pages; p++)
+		{
+			pageStart[p + 1] += pageStart[p];
+		}
+		for (int i = 0; i < count; i++)
+		{
+			if (drawRegion[i] >= 0)
+			{
+				drawOrder[pageStart[atlas.getRegionPage(drawRegion[i])]++] = i;
+			}
+		}
+		int batched = pages > 0 ? pageStart[pages - 1] : 0;
+		for (int n = 0; n < batched; n++)
+		{
+			int i = drawOrder[n];
+			atlas.draw(g2d, drawRegion[i], drawX[i], drawY[i]);
+		}
+
+		for (int i = 0; i < count && pending > 0; i++)
+		{
+			if (drawRegion[i] < 0 && image[i] != null)
+			{
+				draw(i, g2d, alpha);
+				pending--;
+			}
+		}
+	}
+
+	/**
+	 * Find the image to copy to draw a sprite, and where: the image itself
+	 * if it isn't rotated, its rotation from the cache otherwise. If the
+	 * image must be transformed placedImage is null
+	 */
+	private void place(int index, double alpha)
+	{
+		int w = width[index];
+		int h = height[index];
+		double x = startX[index] + (endX[index] - startX[index]) * alpha;
+		double y = startY[index] + (endY[index] - startY[index]) * alpha;
+		int centerX = (int)x + w/2;
+		int centerY = (int)y + h/2;
+		int step = rotations != null ? rotations.step(angle[index]) : -1;
+		placedCenterX = centerX;
+		placedCenterY = centerY;
+		placedImage = null;
+
+		if (step == 0)
+		{
+			placedImage = image[index];
+			placedX = centerX - w/2;
+			placedY = centerY - h/2;
+		}
+		else if (step > 0)
+		{
+			BufferedImage rotated = rotations.get(image[index], w, h, step);
+			if (rotated != null)
+			{
+				int side = rotated.getWidth();
+				placedImage = rotated;
+				placedX = centerX - side/2;
+				placedY = centerY - side/2;
+			}
+		}
+	}
+
+	private void setTransform(int centerX, int centerY, int w, int h, double angle)
+	{
+		transform.setToIdentity();
+		transform.translate(centerX, centerY);
+		transform.rotate(Math.toRadians(angle));
+		transform.translate(-w/2, -h/2);
+	}
+
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity <= image.length)
+		{
+			return;
+		}
+		capacity = Math.max(capacity, image.length * 2);
+		startX = Arrays.copyOf(startX, capacity);
+		startY = Arrays.copyOf(startY, capacity);
+		endX = Arrays.copyOf(endX, capacity);
+		endY = Arrays.copyOf(endY, capacity);
+		angle = Arrays.copyOf(angle, capacity);
+		type = Arrays.copyOf(type, capacity);
+		width = Arrays.copyOf(width, capacity);
+		height = Arrays.copyOf(height, capacity);
+		image = Arrays.copyOf(image, capacity);
+		boundsX = Arrays.copyOf(boundsX, capacity);
+		boundsY = Arrays.copyOf(boundsY, capacity);
+		boundsWidth = Arrays.copyOf(boundsWidth, capacity);
+		boundsHeight = Arrays.copyOf(boundsHeight, capacity);
+		collided = Arrays.copyOf(collided, capacity);
+	}
+}
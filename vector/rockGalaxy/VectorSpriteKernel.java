@@ -0,0 +1,111 @@
+package rockGalaxy;
+/**
+ * The kernel moving the sprites with the SIMD instructions of the CPU,
+ * through the Vector API, as many sprites at a time as the lanes of the
+ * preferred vector shape. It gives exactly the results of the scalar
+ * kernel: the same additions, the same comparisons, and the rows of dead
+ * sprites are never written, see SpriteBenchmark -verify. Compile and run it with
+ * --add-modules jdk.incubator.vector
+ * @author Ing. Fabio Brea
+ * @version 1.1
+ */
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+class VectorSpriteKernel extends SpriteKernel
+{
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Integer> INTS =
+			VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLES.length() * Integer.SIZE));
+
+	/* Rows whose type warps, computed before the vector loop */
+	private boolean[] warping = new boolean[0];
+
+	/**
+	 * Constructor
+	 * @throws UnsupportedOperationException if the CPU can't process two doubles at a time
+	 */
+	VectorSpriteKernel()
+	{
+		if (DOUBLES.length() < 2)
+		{
+			throw new UnsupportedOperationException("No vector shape for doubles");
+		}
+	}
+
+	String getName()
+	{
+		return "vector " + DOUBLES.vectorBitSize() + " bit";
+	}
+
+	void move(SpriteData data, int count, int areaWidth, int areaHeight, boolean[] types)
+	{
+		if (warping.length < count)
+		{
+			warping = new boolean[Math.max(count, 2 * warping.length)];
+		}
+		for (int i = 0; i < count; i++)
+		{
+			int t = data.type[i];
+			warping[i] = t >= 0 && t < types.length && types[t];
+		}
+
+		DoubleVector zero = DoubleVector.zero(DOUBLES);
+		DoubleVector full = DoubleVector.broadcast(DOUBLES, 360.0);
+		DoubleVector right = DoubleVector.broadcast(DOUBLES, (double) areaWidth);
+		DoubleVector bottom = DoubleVector.broadcast(DOUBLES, (double) areaHeight);
+
+		int upper = DOUBLES.loopBound(count);
+		int i = 0;
+		for (; i < upper; i += DOUBLES.length())
+		{
+			VectorMask<Double> alive = VectorMask.fromArray(DOUBLES, data.alive, i);
+			if (!alive.anyTrue())
+			{
+				continue;
+			}
+
+			DoubleVector x = DoubleVector.fromArray(DOUBLES, data.x, i);
+			DoubleVector y = DoubleVector.fromArray(DOUBLES, data.y, i);
+			x.intoArray(data.prevX, i, alive);
+			y.intoArray(data.prevY, i, alive);
+			x = x.add(DoubleVector.fromArray(DOUBLES, data.vx, i));
+			y = y.add(DoubleVector.fromArray(DOUBLES, data.vy, i));
+
+			DoubleVector rate = DoubleVector.fromArray(DOUBLES, data.rotRate, i);
+			DoubleVector angle = DoubleVector.fromArray(DOUBLES, data.faceAngle, i).add(rate);
+			VectorMask<Double> under = angle.lt(0.0);
+			VectorMask<Double> over = angle.compare(VectorOperators.GT, 360.0).andNot(under);
+			angle = angle.blend(full.sub(rate), under).blend(rate, over);
+			angle.intoArray(data.faceAngle, i, alive);
+
+			VectorMask<Double> warp = VectorMask.fromArray(DOUBLES, warping, i).and(alive);
+			if (warp.anyTrue())
+			{
+				/* 0 - (width - 1), like the scalar kernel, so that it's never -0.0 */
+				DoubleVector left = zero.sub(toDoubles(data.width, i).sub(1.0));
+				DoubleVector top = zero.sub(toDoubles(data.height, i).sub(1.0));
+				VectorMask<Double> pastLeft = x.lt(left).and(warp);
+				VectorMask<Double> pastRight = x.compare(VectorOperators.GT, right).andNot(pastLeft).and(warp);
+				x = x.blend(right, pastLeft).blend(left, pastRight);
+				x.intoArray(data.prevX, i, pastLeft.or(pastRight));
+				VectorMask<Double> pastTop = y.lt(top).and(warp);
+				VectorMask<Double> pastBottom = y.compare(VectorOperators.GT, bottom).andNot(pastTop).and(warp);
+				y = y.blend(bottom, pastTop).blend(top, pastBottom);
+				y.intoArray(data.prevY, i, pastTop.or(pastBottom));
+			}
+			x.intoArray(data.x, i, alive);
+			y.intoArray(data.y, i, alive);
+		}
+		data.move(i, count, areaWidth, areaHeight, types);
+	}
+
+	private static DoubleVector toDoubles(int[] values, int offset)
+	{
+		return (DoubleVector) IntVector.fromArray(INTS, values, offset).convertShape(VectorOperators.I2D, DOUBLES, 0);
+	}
+}